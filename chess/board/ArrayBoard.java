@@ -618,6 +618,28 @@ public class ArrayBoard implements Board<ArrayMove,ArrayBoard>
       assert(noNullsOnBoard());
   }
   
+  public void    applyNullMove()
+  {
+  	//a pass only has to remember the enpassant square, there is no move to undo
+  	UndoMove undo = new UndoMove();
+  	undo.enpassantSquare = enpassantSquare;
+  	
+  	undoStack.addFirst(undo);
+  	
+  	setEnpassantSquare(NO_SQUARE);
+  	flipTurn();
+  }
+  
+  public void    undoNullMove()
+  {
+  	UndoMove u = undoStack.removeFirst();
+  	
+  	assert(u.move == null);
+  	
+  	setEnpassantSquare(u.enpassantSquare);
+  	flipTurn();
+  }
+  
   public List<ArrayMove> generatePseudoMoves()
   {
   	List<ArrayPiece> piece_accum     = new ArrayList<ArrayPiece>(128);
@@ -1230,11 +1252,65 @@ public class ArrayBoard implements Board<ArrayMove,ArrayBoard>
   	return legal;
   }
   
+  public int staticExchange(ArrayMove move)
+  {
+  	int gain = move.capture.exchangeValue();
+  	
+  	if(move.isPromotion())
+  		gain += move.promote.exchangeValue() - EXCHANGE_VALUES[PAWN];
+  	
+  	applyMove(move);
+  	gain -= bestExchangeOn(move.dest.square);
+  	undoMove();
+  	
+  	return gain;
+  }
+  
+  /**
+   * The material the player to move wins by capturing on the specified
+   * square with the least valuable attacker, and letting the exchange
+   * play out. Never negative, since the player can always stop capturing.
+   * 
+   * @param square the square being exchanged on.
+   * @return the material won.
+   */
+  private int bestExchangeOn(int square)
+  {
+  	List<ArrayPiece> attackers = new ArrayList<ArrayPiece>(16);
+  	getAllAttacksOn(square, P_IS_COLOR[toPlay()], attackers);
+  	
+  	ArrayPiece attacker = null;
+  	for(ArrayPiece p : attackers)
+  	{
+  		if(attacker == null || p.exchangeValue() < attacker.exchangeValue())
+  			attacker = p;
+  	}
+  	
+  	if(attacker == null)
+  		return 0;
+  	
+  	//pieces behind the attacker join in once it has moved off its square
+  	ArrayPiece victim = board[square];
+  	applyMove(ArrayMove.FACTORY.create().init(attacker, victim, victim));
+  	int gain = victim.exchangeValue() - bestExchangeOn(square);
+  	undoMove();
+  	
+  	return Math.max(0, gain);
+  }
+  
   public boolean inCheck()
   {
   	return inCheck(toPlay());
   }
   
+  public boolean onlyPawnsLeft()
+  {
+  	final int ME = toPlay();
+  	
+  	//everything but the king and the pawns
+  	return countOfColor(ME) - countOfPiece(makePieceCode(ME,PAWN)) - 1 == 0;
+  }
+  
   /**
    * Checks whether or not the specified color is currently in check.
    * 
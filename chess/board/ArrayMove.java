@@ -49,7 +49,7 @@ public class ArrayMove implements Move<ArrayMove>
     copy.source    = source.copy();
     copy.dest      = dest.copy();
     copy.promote   = promote == null ? null : promote.copy();
-    copy.capture   = capture;
+    copy.capture   = capture.copy();
     
     return copy;
   }
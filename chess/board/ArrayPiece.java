@@ -76,6 +76,12 @@ public class ArrayPiece implements Creatable<ArrayPiece>
         PIECES_OF_COLOR[WHITE] = WHITE_PIECES;
         PIECES_OF_COLOR[BLACK] = BLACK_PIECES;
     }
+    /*
+     * Material values used by static exchange evaluation, indexed by type.
+     * A pawn is worth 100. The king is worth more than everything else
+     * put together, so no exchange ever gives it up.
+     */
+    public static final int[]   EXCHANGE_VALUES = {0, 100, 300, 20000, 0, 300, 500, 900};
     public static final int[][] PROMOTED_PIECES = new int[2][];
     static {
         int[] ws = {WHITE_QUEEN, WHITE_KNIGHT, WHITE_ROOK, WHITE_BISHOP};
@@ -158,6 +164,14 @@ public class ArrayPiece implements Creatable<ArrayPiece>
         return typeOfPiece(this.piece);
     }
     
+    /**
+     * @return the material value of this piece in a static exchange.
+     */
+    public int exchangeValue()
+    {
+        return EXCHANGE_VALUES[type()];
+    }
+    
     /**
      * @return the row of this piece.
      */
@@ -88,6 +88,28 @@ extends Creatable<B>
      */
     public void    undoMove             ();
     
+    /**
+     * Passes the turn to the other player without moving a piece.
+     * Used by the search for null move pruning.
+     */
+    public void    applyNullMove        ();
+    /**
+     * Reverts a pass made with applyNullMove().
+     */
+    public void    undoNullMove         ();
+    
+    /**
+     * Static exchange evaluation. Plays out every capture on the
+     * destination square of the move, each side always recapturing with
+     * its least valuable piece and stopping when recapturing would lose
+     * material.
+     * 
+     * @param move a capture or promotion.
+     * @return the material the player to move wins, negative when the
+     *  move loses material. A pawn is worth 100.
+     */
+    public int     staticExchange       (M move);
+    
     /**
      * @return true iff the king of the player to move is in check.
      */
@@ -96,6 +118,12 @@ extends Creatable<B>
      * @return the player who would make the next move.
      */
     public int     toPlay               ();
+    /**
+     * @return true iff the player to move has nothing left but
+     *  pawns and a king. Passing is often the best move in these
+     *  positions (zugzwang), so null moves are unsafe there.
+     */
+    public boolean onlyPawnsLeft        ();
     /**
      * @return the number of times white and black have
      *  moved since the beginning of the game.
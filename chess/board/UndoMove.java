@@ -16,7 +16,7 @@ public class UndoMove implements Creatable<UndoMove>
 {
 	public static final UndoMove FACTORY = new UndoMove();
 	
-	public ArrayMove  move;
+	public ArrayMove  move;             //null when undoing a null move (pass)
 	public int        enpassantSquare;
 	public boolean[]  canCastleKingside  = new boolean[2];
 	public boolean[]  canCastleQueenside = new boolean[2];
@@ -45,7 +45,7 @@ public class UndoMove implements Creatable<UndoMove>
 	{
 		UndoMove copy = create();
 		
-		copy.move               = move.copy();
+		copy.move               = (move == null ? null : move.copy());
 		copy.enpassantSquare    = enpassantSquare;
 		
 		System.arraycopy(canCastleKingside, 0, copy.canCastleKingside, 0, canCastleKingside.length);
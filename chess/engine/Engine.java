@@ -8,8 +8,12 @@ import chess.board.Board;
 import chess.evaluation.Evaluator;
 import chess.evaluation.SimpleEvaluator;
 import chess.evaluation.AdvancedEvaluator;
-import chess.search.AdvancedTimer;
+import chess.search.CpuTimer;
+import chess.search.DynamicTimer;
 import chess.search.Negamax;
+import chess.search.SearchLimits;
+import chess.search.SearchListener;
+import chess.search.SearchResult;
 import chess.search.Searcher;
 
 
@@ -20,12 +24,23 @@ import chess.search.Searcher;
 public class Engine {	
 	private ArrayBoard board;
 	private Searcher <ArrayMove,ArrayBoard> searcher; 
+	private Negamax<ArrayMove,ArrayBoard> negamax;
 	private Evaluator<ArrayBoard> eval;
 
 	private int plyCount = 0;
 	private int minDepth, maxDepth;	
+	private int time, inc;
 	private int difficulty;
 
+	// Pondering - after our move, search the reply we expect on a copy of the
+	// board, until the opponent moves. lastResult is our last search, until
+	// its move is played
+	private boolean pondering = false;
+	private SearchResult<ArrayMove> lastResult;
+	private volatile Thread ponderThread;
+	private long ponderSignature;
+	private volatile SearchResult<ArrayMove> ponderResult;
+
 	public static final int EASY = 0;
 	public static final int MEDIUM = 1;
 	public static final int HARD = 2;
@@ -57,38 +72,62 @@ public class Engine {
 		// Start with a fresh board
 		board = ArrayBoard.FACTORY.create().init(Board.STARTING_POSITION);
 		this.difficulty = difficulty;
+		this.time = time;
+		this.inc = inc;
+		negamax = new Negamax<ArrayMove,ArrayBoard>();
 
 		switch (difficulty) {
 		case EASY:			
 			minDepth = 2;
 			maxDepth = 3;
 			eval = new SimpleEvaluator();
-			searcher = new Negamax<ArrayMove,ArrayBoard>();			
 			break;
 		case MEDIUM:
 			minDepth = 3;
 			maxDepth = 4;
 			eval = new SimpleEvaluator();
-			searcher = new Negamax<ArrayMove,ArrayBoard>();			
 			break;
 		case HARD:
 			minDepth = 4;
 			maxDepth = 6;
 			eval = new AdvancedEvaluator();			
-			searcher = new Negamax<ArrayMove,ArrayBoard>();			
+			negamax.setNullMovePruning(true);
+			negamax.setLateMoveReductions(true);
+			negamax.setFrontierPruning(true);
+			negamax.setQuiescencePruning(true);
+			negamax.setEnhancedTranspositionCutoffs(true);
+			negamax.setProbCut(true);
+			negamax.setExtensionBudget(true);
 			break;			
 		case ULTRA:
 			minDepth = 5;
 			maxDepth = 20;
 			eval = new AdvancedEvaluator();			
-			searcher = new Negamax<ArrayMove,ArrayBoard>();				
+			negamax.setNullMovePruning(true);
+			negamax.setNullMoveVerification(true);
+			negamax.setLateMoveReductions(true);
+			negamax.setFrontierPruning(true);
+			negamax.setQuiescencePruning(true);
+			negamax.setEnhancedTranspositionCutoffs(true);
+			negamax.setProbCut(true);
+			negamax.setExtensionBudget(true);
 			break;
 		}
 
+		searcher = negamax;
 		searcher.setMinDepth(minDepth);
 		searcher.setMaxDepth(maxDepth);
 		searcher.setEvaluator(eval);
-		searcher.setTimer(new AdvancedTimer(time, inc));
+		searcher.setTimer(new DynamicTimer(time, inc));
+	}
+
+	/**
+	 * Sets how many threads search each move. Defaults to 1.
+	 * 
+	 * @param threads the number of search threads
+	 */
+	public void setThreads(int threads) {
+		negamax.setThreads(threads);
 	}
 
 	/**
@@ -101,6 +140,41 @@ public class Engine {
 			throw new IllegalStateException("Did you forget to call undoMove() somewhere?");
 		}
 		board.applyMove(m);
+
+		// The first move after a search is ours, so ponder on the reply we expect
+		if (lastResult != null) {
+			if (m.equals(lastResult.getBestMove()) && lastResult.getPv().size() > 1) {
+				startPondering(lastResult.getPv().get(1));
+			}
+			lastResult = null;
+		}
+	}
+
+	/**
+	 * Budgets the search thread's CPU time instead of the time on the
+	 * wall clock. Off by default. With it on, each move gets about the
+	 * same search however busy the machine is, and the wall clock only
+	 * keeps it from losing on time.
+	 * 
+	 * @param enabled true to budget CPU time
+	 */
+	public void setCpuTime(boolean enabled) {
+		searcher.setTimer(enabled ? new CpuTimer(time, inc) : new DynamicTimer(time, inc));
+	}
+
+	/**
+	 * Turns pondering on or off. Off by default. With it on, the
+	 * engine keeps searching on the opponent's time, and keeps its
+	 * transposition table between moves.
+	 * 
+	 * @param enabled true to ponder
+	 */
+	public void setPondering(boolean enabled) {
+		pondering = enabled;
+		negamax.setTableReuse(enabled);
+		if (!enabled) {
+			stopPondering();
+		}
 	}
 
 	/**
@@ -117,7 +191,94 @@ public class Engine {
 	 * @param opTime number of seconds left on the opponent's clock
 	 */
 	public ArrayMove computeMove(int myTime, int opTime) {
-		return searcher.getBestMove(board, myTime, opTime);
+		if (!pondering) {
+			return searcher.getBestMove(board, myTime, opTime);
+		}
+
+		// Ponder hit - the search carries on against our clock. On a miss it
+		// stops, and the new search starts with the table it left
+		SearchResult<ArrayMove> result;
+		if (ponderThread != null && board.signature() == ponderSignature) {
+			negamax.ponderHit(myTime, opTime);
+			joinPonderThread();
+			result = ponderResult;
+		}
+		else {
+			stopPondering();
+			SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+			limits.setClock(myTime, opTime);
+			limits.setPlayed(true);
+			result = searcher.search(board, limits);
+		}
+
+		lastResult = result;
+		return result.getBestMove();
+	}
+
+	// Searches the position after the expected reply, on its own thread
+	private void startPondering(ArrayMove reply) {
+		final ArrayBoard ponderBoard = board.copy();
+		ponderBoard.applyMove(reply.copy());
+		ponderSignature = ponderBoard.signature();
+		ponderResult = null;
+
+		final SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+		limits.setPlayed(true);
+		limits.setPonder(true);
+
+		// Cleared here rather than by the search, so a stop that comes before
+		// the thread gets going isn't lost
+		negamax.clearStop();
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				ponderResult = searcher.search(ponderBoard, limits);
+			}
+		}, "Ponder");
+		thread.setDaemon(true);
+		thread.start();
+
+		// Only once it's running, so stop() can't join it before it starts
+		ponderThread = thread;
+	}
+
+	private void stopPondering() {
+		if (ponderThread != null) {
+			searcher.stop();
+			joinPonderThread();
+		}
+	}
+
+	// stop() may join it from another thread too, so it's read once
+	private void joinPonderThread() {
+		Thread thread = ponderThread;
+		if (thread == null) {
+			return;
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		ponderThread = null;
+	}
+
+	/**
+	 * Analyses the current position within the limits given, without
+	 * taking the result as the move played.
+	 * @param limits what the search may do
+	 * @return the best move, with its score, principal variation and counts
+	 */
+	public SearchResult<ArrayMove> search(SearchLimits<ArrayMove> limits) {
+		return searcher.search(board, limits);
+	}
+
+	/**
+	 * Asks a computeMove() running on another thread to finish now,
+	 * with the best move it has completed. Also ends any pondering.
+	 */
+	public void stop() {
+		searcher.stop();
+		stopPondering();
 	}
 
 	/**
@@ -128,4 +289,13 @@ public class Engine {
 	public void addBestMoveObserver(Observer o) {
 		searcher.addBestMoveObserver(o);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Adds a SearchListener to the Searcher, which hears about each
+	 * iteration, best move and principal variation as it's searched.
+	 * @param listener the new listener
+	 */
+	public void addSearchListener(SearchListener<ArrayMove> listener) {
+		searcher.addSearchListener(listener);
+	}
+}
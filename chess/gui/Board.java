@@ -841,11 +841,31 @@ public final class Board extends Canvas implements chess.board.Board<ArrayMove,
 		boardState.undoMove();
 	}
 
+	@Override
+	public void applyNullMove() {
+		boardState.applyNullMove();
+	}
+
+	@Override
+	public void undoNullMove() {
+		boardState.undoNullMove();
+	}
+
 	@Override
 	public boolean inCheck() {
 		return boardState.inCheck();
 	}
 
+	@Override
+	public int staticExchange(ArrayMove move) {
+		return boardState.staticExchange(move);
+	}
+
+	@Override
+	public boolean onlyPawnsLeft() {
+		return boardState.onlyPawnsLeft();
+	}
+
 	@Override
 	public int toPlay() {
 		return boardState.toPlay();
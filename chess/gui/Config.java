@@ -15,6 +15,12 @@ public final class Config {
 	// msec between best move updates
 	public static final int delayBetweenBestMoves = 500;
 	
+	// Engines think on their opponent's time
+	public static final boolean pondering = false;
+	
+	// Engines budget their CPU time rather than the wall clock
+	public static final boolean cpuTime = false;
+	
 	public final static Color colorWhitePiece = Color.white;
 	public final static Color colorWhiteOutline = Color.black;
 	public final static Color colorBlackPiece = Color.black;
@@ -41,7 +41,7 @@ public final class GamePanel extends JPanel {
 	private int noCaptureOrPawnCount;
 
 	// Thread for chess searcher so GUI can update
-	private SwingWorker<ArrayMove, ArrayMove> engineWorker;
+	private EngineWorker engineWorker;
 
 	private static final int HUMAN_NONE  = 2;
 	private static final int HUMAN_WHITE = 3;
@@ -229,6 +229,13 @@ public final class GamePanel extends JPanel {
 			upperPlayerName = upperPlayer.getName();
 		}
 
+		upperPlayer.setPondering(Config.pondering);
+		upperPlayer.setCpuTime(Config.cpuTime);
+		if (lowerPlayer != null) {
+			lowerPlayer.setPondering(Config.pondering);
+			lowerPlayer.setCpuTime(Config.cpuTime);
+		}
+
 		lowerName.setText(lowerPlayerName);
 		upperName.setText(upperPlayerName);	
 
@@ -395,6 +402,15 @@ public final class GamePanel extends JPanel {
 	private void endGame() {
 		if (engineWorker != null) {
 			engineWorker.cancel(true);
+			engineWorker.stopSearch();
+		}
+
+		// Either engine may be pondering
+		if (upperPlayer != null) {
+			upperPlayer.stop();
+		}
+		if (lowerPlayer != null) {
+			lowerPlayer.stop();
 		}
 
 		lowerClock.stopClock();
@@ -468,26 +484,43 @@ public final class GamePanel extends JPanel {
 			return engine.computeMove(myTime, opTime);		
 		}
 
-		@SuppressWarnings("deprecation")
+		// The search winds itself down and its result is ignored. A new game has
+		// started by now, so the search is useless
+		public void stopSearch() {
+			engine.stop();
+		}
+
+		// Called on the searcher's publisher thread, not the search thread
 		public void update(Observable o, Object arg) {
 
-			// This lets us interrupt the thread, and ignore best moves that
-			// are no longer valid
+			// Our move is made, so these come from pondering, and aren't ours to show
+			if (isDone() && !isCancelled()) {
+				return;
+			}
+
+			// This lets us ignore best moves that are no longer valid
 			// https://blogs.oracle.com/swinger/entry/swingworker_stop_that_train
-			if(Thread.currentThread().isInterrupted()) {
+			if(isCancelled()) {
 				firePropertyChange(BEST_MOVE, bestMove, null);
 				bestMove = null;
 
-				// This is deprecated, but there's no good alternative to ending
-				// the thread. By this point, a new game has started and this thread is useless
-				// http://stackoverflow.com/questions/16504140/thread-stop-deprecated
-				Thread.currentThread().stop();
+				// Stop again, in case the search hadn't started when it was cancelled
+				stopSearch();
+				return;
 			}
 
 			if(arg instanceof ArrayMove) {
 				ArrayMove newBestMove = (ArrayMove) arg;
 				firePropertyChange(BEST_MOVE, bestMove, newBestMove);	
-				bestMove = newBestMove;					
+				bestMove = newBestMove;
+
+				// Sleep so user can see moves visually as the searcher finds better moves.
+				// Only this thread waits, and moves found meanwhile collapse into the latest
+				try {
+					Thread.sleep(Config.delayBetweenBestMoves);
+				} catch(InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
 			}
 		}
 	}
@@ -0,0 +1,435 @@
+package chess.search;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import chess.board.Board;
+import chess.board.Move;
+import chess.gui.Config;
+
+/**
+ * A parallel chess searcher that uses ABDADA:
+ *
+ * Iterative Deepening, in every thread
+ * Transposition Table shared by all threads (SharedTranspositionTable)
+ * Busy counts for nodes, so threads defer siblings another thread is searching
+ * Quiescence Search (captures and promotions)
+ * Move ordering (hash move, then captures and promotions)
+ *
+ * Every thread searches the whole tree from the root. The first move of a node
+ * is always searched, but its other moves are skipped while another thread is
+ * on them and only searched after the rest, by which time the table usually has
+ * their result. The calling thread owns the timer and reports best moves.
+ *
+ * Resources:
+ * Weill, "The ABDADA Distributed Minimax-Search Algorithm" (1996)
+ */
+public class ABDADA<M extends Move<M>, B extends Board<M,B>>
+extends AbstractSearcher<M,B> {
+
+	// Shared table holds 2^TABLE_BITS entries. Busy counts are kept in a separate,
+	// smaller array without keys, since a collision only defers a move for a while
+	private final int TABLE_BITS = 21;
+	private final int BUSY_BITS = 16;
+	private SharedTranspositionTable<M> table;
+	private AtomicIntegerArray busy;
+
+	// Returned by an exclusive search of a node another thread is busy with
+	private static final int ON_EVALUATION = Integer.MAX_VALUE;
+
+	// How deep our quiescence search goes
+	private final int QUIESCENCE_DEPTH = 8;
+
+	// Mate scores are evaluator.mate() + MAX_PLY less the plies to the mate,
+	// so they stay beyond evaluator.mate() and below infinity
+	private final int MAX_PLY = 1000;
+
+	private int threads = 1;
+	private volatile boolean stopped;
+
+	/**
+	 * Sets how many threads search at once, including the calling
+	 * thread. Defaults to 1.
+	 *
+	 * @param threads the number of search threads.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(threads, 1);
+	}
+
+	public M getBestMove(B board, int myTime, int opTime) {
+		nodeCount = 0;
+		stopped = false;
+		clearStopRequest();
+
+		if (table == null) {
+			table = new SharedTranspositionTable<M>(TABLE_BITS);
+			busy = new AtomicIntegerArray(1 << BUSY_BITS);
+		}
+		table.clear();
+
+		timer.start(myTime, opTime);
+		timer.notOkToTimeup();
+
+		// The calling thread is the first worker. The others search copies of the board
+		Worker main = new Worker(board, 0);
+		if (main.rootMoves.isEmpty()) {
+			throw new IllegalStateException();
+		}
+
+		List<Worker> helpers = new ArrayList<Worker>();
+		List<Thread> helperThreads = new ArrayList<Thread>();
+		for (int i = 1; i < threads; i++) {
+			final Worker helper = new Worker(board.copy(), i);
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					helper.iterativeDeepening();
+				}
+			}, "ABDADA worker " + i);
+			thread.setDaemon(true);
+			thread.start();
+			helpers.add(helper);
+			helperThreads.add(thread);
+		}
+
+		M bestMove = main.iterativeDeepening();
+
+		// Helpers only stop when we tell them to
+		stopped = true;
+		for (Thread thread : helperThreads) {
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		nodeCount = main.nodes;
+		for (Worker helper : helpers) {
+			nodeCount += helper.nodes;
+		}
+
+		if (Config.debug) {
+			System.out.println("Nodes searched: " + NumberFormat.getNumberInstance(Locale.US).format(nodeCount) +
+					" by " + threads + " threads");
+		}
+		return bestMove;
+	}
+
+	// Only the calling thread looks at the timer. Anyone can see a stop request
+	private boolean timeup(Worker worker) {
+		return stopped || stopRequested() || (worker.index == 0 && timer.timeup());
+	}
+
+	// One search thread, with its own board
+	private class Worker {
+		private final B board;
+		private final int index;
+		private final LinkedList<M> rootMoves;
+		private int ply;
+		private long nodes;
+
+		public Worker(B board, int index) {
+			this.board = board;
+			this.index = index;
+			this.rootMoves = generateOrderedMoves(board);
+		}
+
+		// Returns the best move of the last finished iteration
+		public M iterativeDeepening() {
+			M bestMove = rootMoves.getFirst();
+
+			for (int depth = 1; depth <= maxDepth; depth++) {
+
+				// We've hit the minimum depth, so timeup regularly
+				if (index == 0 && depth >= minDepth) {
+					timer.okToTimeup();
+				}
+
+				if (timeup(this)) {
+					break;
+				}
+
+				M iterationMove = rootSearch(depth);
+				if (iterationMove == null) {
+					break;
+				}
+
+				bestMove = iterationMove;
+				rootMoves.remove(bestMove);
+				rootMoves.addFirst(bestMove);
+				if (index == 0) {
+					reportNewBestMove(bestMove);
+				}
+			}
+			return bestMove;
+		}
+
+		// Searches the root moves, deferring ones another thread is busy with.
+		// Returns null if we run out of time
+		private M rootSearch(int depth) {
+			nodes++;
+			ply = 0;
+			int alpha = -evaluator.infty();
+			int beta = evaluator.infty();
+			M bestMove = null;
+
+			Set<M> searched = new HashSet<M>();
+			for (int pass = 0; pass < 2 && searched.size() < rootMoves.size(); pass++) {
+				for (M move : rootMoves) {
+					if (searched.contains(move)) {
+						continue;
+					}
+					if (timeup(this)) {
+						return null;
+					}
+
+					boolean exclusive = (pass == 0 && !searched.isEmpty());
+					board.applyMove(move);
+					ply++;
+					int value = search(depth - 1, -beta, -alpha, exclusive);
+					ply--;
+					board.undoMove();
+
+					if (value == ON_EVALUATION) {
+						continue;
+					}
+					searched.add(move);
+					value = -value;
+
+					if (value > alpha) {
+						alpha = value;
+						bestMove = move;
+					}
+				}
+			}
+
+			if (timeup(this)) {
+				return null;
+			}
+			table.put(board.signature(), new BoardInfo<M>(alpha, bestMove, BoardInfo.EXACT, depth));
+			return bestMove;
+		}
+
+		// Alpha-beta search that marks the node busy while searching it. An exclusive
+		// search returns ON_EVALUATION rather than search a node another thread is on
+		private int search(int depth, int alpha, int beta, boolean exclusive) {
+			nodes++;
+			int originalAlpha = alpha;
+
+			BoardInfo<M> boardInfo = table.get(board.signature());
+			if (boardInfo != null && boardInfo.getDepth() >= depth) {
+				int tableValue = valueFromTable(boardInfo.getValue());
+
+				if (boardInfo.getType() == BoardInfo.EXACT) {
+					return tableValue;
+				}
+				else if (boardInfo.getType() == BoardInfo.LOWER && tableValue > alpha) {
+					alpha = tableValue;
+				}
+				else if (boardInfo.getType() == BoardInfo.UPPER && tableValue < beta) {
+					beta = tableValue;
+				}
+				if (alpha >= beta) {
+					return tableValue;
+				}
+			}
+
+			if (depth == 0) {
+				return quiescenceSearch(QUIESCENCE_DEPTH, alpha, beta);
+			}
+
+			int busyIndex = (int) board.signature() & ((1 << BUSY_BITS) - 1);
+			if (exclusive && busy.get(busyIndex) > 0) {
+				return ON_EVALUATION;
+			}
+
+			LinkedList<M> moves = generateOrderedMoves(board);
+			if (moves.isEmpty()) {
+				return board.inCheck() ? matedScore() : -evaluator.stalemate();
+			}
+			if (boardInfo != null) {
+				int hashIndex = moves.indexOf(boardInfo.getBestMove());
+				if (hashIndex > 0) {
+					moves.addFirst(moves.remove(hashIndex));
+				}
+			}
+
+			busy.incrementAndGet(busyIndex);
+			try {
+				int bestValue = -evaluator.infty();
+				M bestMove = moves.getFirst();
+				Set<M> searched = new HashSet<M>();
+
+				// First pass defers siblings other threads are on, second pass searches them
+				for (int pass = 0; pass < 2 && searched.size() < moves.size(); pass++) {
+					for (M move : moves) {
+						if (searched.contains(move)) {
+							continue;
+						}
+						if (timeup(this)) {
+							return -evaluator.infty();
+						}
+
+						boolean childExclusive = (pass == 0 && !searched.isEmpty());
+						board.applyMove(move);
+						ply++;
+						int value = search(depth - 1, -beta, -alpha, childExclusive);
+						ply--;
+						board.undoMove();
+
+						if (value == ON_EVALUATION) {
+							continue;
+						}
+						searched.add(move);
+						value = -value;
+
+						if (value > bestValue) {
+							bestValue = value;
+							bestMove = move;
+						}
+						if (bestValue > alpha) {
+							alpha = bestValue;
+						}
+
+						// Alpha-beta pruning
+						if (bestValue >= beta) {
+							store(originalAlpha, beta, depth, bestValue, bestMove);
+							return bestValue;
+						}
+					}
+				}
+
+				store(originalAlpha, beta, depth, bestValue, bestMove);
+				return bestValue;
+			}
+			finally {
+				busy.decrementAndGet(busyIndex);
+			}
+		}
+
+		// Quiescence Search - keeps looking at captures until the position is
+		// quiet, so we don't evaluate in the middle of an exchange
+		private int quiescenceSearch(int depth, int alpha, int beta) {
+			nodes++;
+			int standPat = evaluator.eval(board);
+
+			if (depth == 0 || standPat >= beta) {
+				return standPat;
+			}
+
+			int bestValue = standPat;
+			if (standPat > alpha) {
+				alpha = standPat;
+			}
+
+			for (M move : generateNonQuietMoves(board)) {
+				if (timeup(this)) {
+					return -evaluator.infty();
+				}
+
+				board.applyMove(move);
+				ply++;
+				int value = -quiescenceSearch(depth - 1, -beta, -alpha);
+				ply--;
+				board.undoMove();
+
+				if (value > bestValue) {
+					bestValue = value;
+				}
+				if (bestValue > alpha) {
+					alpha = bestValue;
+				}
+
+				// Alpha-beta pruning
+				if (bestValue >= beta) {
+					break;
+				}
+			}
+			return bestValue;
+		}
+
+		// Results that ran out of time are never stored
+		private void store(int alpha, int beta, int depth, int bestValue, M bestMove) {
+			if (timeup(this)) {
+				return;
+			}
+
+			int type = BoardInfo.EXACT;
+			if (bestValue <= alpha) {
+				type = BoardInfo.UPPER;
+			}
+			else if (bestValue >= beta) {
+				type = BoardInfo.LOWER;
+			}
+			table.put(board.signature(), new BoardInfo<M>(valueToTable(bestValue), bestMove, type, depth));
+		}
+
+		// Score for being mated at the current ply
+		private int matedScore() {
+			return -(evaluator.mate() + MAX_PLY - ply);
+		}
+
+		// Mate scores are stored as the distance from the stored node rather
+		// than from the root, so they're still right when probed at another ply
+		private int valueToTable(int value) {
+			if (value >= evaluator.mate()) {
+				return value + ply;
+			}
+			else if (value <= -evaluator.mate()) {
+				return value - ply;
+			}
+			return value;
+		}
+
+		private int valueFromTable(int value) {
+			if (value >= evaluator.mate()) {
+				return value - ply;
+			}
+			else if (value <= -evaluator.mate()) {
+				return value + ply;
+			}
+			return value;
+		}
+	}
+
+	// Legal moves, with captures and promotions first
+	private LinkedList<M> generateOrderedMoves(B board) {
+		List<M> psmoves = board.generatePseudoMoves();
+		LinkedList<M> moves = new LinkedList<M>();
+		Set<M> setmoves = new HashSet<M>(256);
+
+		for (M m : psmoves) {
+			if (setmoves.add(m) && board.isLegalPseudoMove(m)) {
+				if (m.isCapture() || m.isEnpassant() || m.isPromotion()) {
+					moves.addFirst(m);
+				}
+				else {
+					moves.add(m);
+				}
+			}
+		}
+		return moves;
+	}
+
+	// Legal captures and promotions
+	private LinkedList<M> generateNonQuietMoves(B board) {
+		List<M> psmoves = board.generatePseudoMoves();
+		LinkedList<M> moves = new LinkedList<M>();
+		Set<M> setmoves = new HashSet<M>(256);
+
+		for (M m : psmoves) {
+			if (setmoves.add(m) && board.isLegalPseudoMove(m) &&
+					(m.isCapture() || m.isEnpassant() || m.isPromotion())) {
+				moves.add(m);
+			}
+		}
+		return moves;
+	}
+}
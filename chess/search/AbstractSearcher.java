@@ -1,12 +1,12 @@
 package chess.search;
 
-import java.util.Observable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Observer;
 
 import chess.board.Board;
 import chess.board.Move;
 import chess.evaluation.Evaluator;
-import chess.gui.Config;
 
 
 public abstract class AbstractSearcher
@@ -25,6 +25,16 @@ public abstract class AbstractSearcher
   
   private BestMovePublisher<M>
     bestMovePublisher = new BestMovePublisher<M>();
+  
+  // Refilled and passed to every listener callback
+  protected final SearchInfo<M> searchInfo = new SearchInfo<M>();
+  
+  private final List<SearchListener<M>>
+    searchListeners = new ArrayList<SearchListener<M>>();
+  private long searchStartTime;
+  
+  // Set by stop() from any thread, and polled by the search itself
+  private volatile boolean stopRequested;
 
   public void setEvaluator(Evaluator<B> e)
   {
@@ -70,27 +80,192 @@ public abstract class AbstractSearcher
     bestMovePublisher.addObserver(o);
   }
   
-  protected void reportNewBestMove(M move)
+  public M pollBestMove()
   {
-    bestMovePublisher.updateBestMove(move);
+    return bestMovePublisher.poll();
+  }
+  
+  /**
+   * A fallback for searchers that only have getBestMove(). It takes the clock,
+   * a move time, which goes before the clock, and a depth. Without either time,
+   * it searches to the max depth. The score and principal variation are what the searcher told its
+   * listeners, if anything. Searchers that can take the other limits override this.
+   */
+  public SearchResult<M> search(B board, SearchLimits<M> limits)
+  {
+    if (limits.getNodes() > 0 || limits.getMate() > 0 || limits.getSearchMoves() != null
+        || limits.getMultiPv() > 1 || limits.isPonder())
+    {
+      throw new UnsupportedOperationException("Only the clock, move time and depth limits are supported");
+    }
+    
+    Timer savedTimer = timer;
+    int savedMinDepth = minDepth;
+    int savedMaxDepth = maxDepth;
+    
+    if (limits.getMoveTime() > 0 || !limits.hasClock())
+    {
+      timer = new MoveTimer(limits.getMoveTime());
+    }
+    if (limits.getDepth() > 0)
+    {
+      maxDepth = Math.min(maxDepth, limits.getDepth());
+      minDepth = Math.min(minDepth, maxDepth);
+    }
     
-	// Sleep so user can see moves visually as the searcher finds better moves
-	try {
-		Thread.sleep(Config.delayBetweenBestMoves);
-	} catch(InterruptedException ex) {
-		Thread.currentThread().interrupt();
-	}											
+    startSearchInfo();
+    M bestMove;
+    try
+    {
+      bestMove = getBestMove(board, limits.getMyTime(), limits.getOpTime());
+    }
+    finally
+    {
+      timer = savedTimer;
+      minDepth = savedMinDepth;
+      maxDepth = savedMaxDepth;
+    }
+    
+    List<M> pv = new ArrayList<M>();
+    for (int i = 0; i < searchInfo.getPvLength(); i++)
+    {
+      pv.add(searchInfo.getPvMove(i).copy());
+    }
+    if (pv.isEmpty() && bestMove != null)
+    {
+      pv.add(bestMove);
+    }
+    return new SearchResult<M>(bestMove, searchInfo.getScore(), searchInfo.getDepth(), pv,
+        nodeCount, elapsedMillis());
+  }
+  
+  public void stop()
+  {
+    stopRequested = true;
+  }
+  
+  // Searchers clear the request as they start, and poll it where they poll the timer
+  protected void clearStopRequest()
+  {
+    stopRequested = false;
+  }
+  
+  protected boolean stopRequested()
+  {
+    return stopRequested;
+  }
+  
+  public void addSearchListener(SearchListener<M> listener)
+  {
+    searchListeners.add(listener);
+  }
+  
+  // Clears the search info and starts its clock, at the start of a search
+  protected void startSearchInfo()
+  {
+    searchInfo.clear();
+    searchStartTime = System.currentTimeMillis();
+  }
+  
+  protected boolean hasSearchListeners()
+  {
+    return !searchListeners.isEmpty();
+  }
+  
+  // The fire methods fill in nodes and time. Anything else is up to the searcher.
+  // Listeners are walked by index, so firing allocates nothing
+  protected void fireIterationStarted(int depth)
+  {
+    searchInfo.setDepth(depth);
+    updateSearchInfo();
+    for (int i = 0; i < searchListeners.size(); i++)
+    {
+      searchListeners.get(i).iterationStarted(searchInfo);
+    }
+  }
+  
+  protected void fireIterationFinished()
+  {
+    updateSearchInfo();
+    for (int i = 0; i < searchListeners.size(); i++)
+    {
+      searchListeners.get(i).iterationFinished(searchInfo);
+    }
+  }
+  
+  protected void fireBestMoveChanged()
+  {
+    updateSearchInfo();
+    for (int i = 0; i < searchListeners.size(); i++)
+    {
+      searchListeners.get(i).bestMoveChanged(searchInfo);
+    }
+  }
+  
+  protected void fireStatistics()
+  {
+    updateSearchInfo();
+    for (int i = 0; i < searchListeners.size(); i++)
+    {
+      searchListeners.get(i).statistics(searchInfo);
+    }
+  }
+  
+  private void updateSearchInfo()
+  {
+    searchInfo.setNodes(nodeCount);
+    searchInfo.setElapsedMillis(elapsedMillis());
+  }
+  
+  // Time since startSearchInfo()
+  protected long elapsedMillis()
+  {
+    return System.currentTimeMillis() - searchStartTime;
+  }
+  
+  protected void reportNewBestMove(M move)
+  {
+    // Never blocks, observers are notified on the publisher's own thread. They
+    // get a copy, since the search goes on changing the pieces of its moves
+    bestMovePublisher.post(move.copy());
   }
   
-  private static class BestMovePublisher
-  <
-    M extends Move<M>
-  > extends Observable
+  // Times a move with no clock, for search(). A move time of 0 never runs out
+  private static class MoveTimer implements Timer
   {
-    public void updateBestMove( M move )
+    private final long moveTime;
+    private long startTime;
+    private boolean noTimeup;
+    
+    MoveTimer(long moveTime)
+    {
+      this.moveTime = moveTime;
+    }
+    
+    public void start(int myTime, int opTime)
+    {
+      startTime = System.currentTimeMillis();
+      noTimeup = true;
+    }
+    
+    public boolean timeup()
+    {
+      return !noTimeup && moveTime > 0 && System.currentTimeMillis() - startTime >= moveTime;
+    }
+    
+    public void notOkToTimeup()
+    {
+      noTimeup = true;
+    }
+    
+    public void okToTimeup()
+    {
+      noTimeup = false;
+    }
+    
+    public boolean hurryUp()
     {
-      setChanged();
-      notifyObservers(move);
+      return false;
     }
   }
 }
@@ -17,7 +17,13 @@ public class AlphaBetaFixedDepth
 	extends AbstractSearcher<M,B>
 {
 	
+	// Search listeners get statistics every time this many more nodes are searched
+	private final long STATISTICS_INTERVAL = 1 << 16;
+	
 	public M getBestMove(B board, int myTime, int opTime) {
+		nodeCount = 0;
+		startSearchInfo();
+		fireIterationStarted(minDepth);
 
 		// Need to do the first depth up here, so that we know which move to actually choose
 		int infinity = evaluator.infty();
@@ -36,9 +42,17 @@ public class AlphaBetaFixedDepth
 				bestMove = move;
 				reportNewBestMove(bestMove);
 				currentAlpha = thisAlpha;
+				
+				// Only the root move is known, so that's the whole principal variation
+				searchInfo.setBestMove(bestMove);
+				searchInfo.setScore(currentAlpha);
+				searchInfo.clearPv();
+				searchInfo.addPvMove(bestMove);
+				fireBestMoveChanged();
 			}
 		}
 		
+		fireIterationFinished();
 		return bestMove;
 	}
 	
@@ -46,6 +60,11 @@ public class AlphaBetaFixedDepth
 	 * This algorithm was adapted from the Wikipedia entry on negamax
 	 */
 	private int negamax(B board, int depth, int alpha, int beta) {
+		nodeCount++;
+		if (nodeCount % STATISTICS_INTERVAL == 0) {
+			fireStatistics();
+		}
+		
 		if (depth == 0) {
 			
 			// Either we are at the desired depth, or there are no more moves
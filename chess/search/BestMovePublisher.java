@@ -0,0 +1,104 @@
+package chess.search;
+
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import chess.board.Move;
+
+/**
+ *
+ * Hands best moves from a search thread to whoever is watching, without ever
+ * blocking the search. Moves go into a single slot mailbox, where a new move
+ * replaces one that hasn't been picked up yet, so a slow consumer only ever
+ * sees the latest move.
+ *
+ * Consumers can poll() the mailbox themselves, or add an Observer, which is
+ * notified on the publisher's own thread. That thread is started when there
+ * is a move to deliver, and ends after a second with nothing to do. Observers
+ * can take as long as they like, throttling included.
+ *
+ */
+public class BestMovePublisher<M extends Move<M>> extends Observable {
+
+	// How long the delivery thread waits for a move before it ends
+	private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final AtomicReference<M> mailbox = new AtomicReference<M>();
+	private final AtomicBoolean delivering = new AtomicBoolean();
+	private volatile Thread deliveryThread;
+	private volatile boolean observed;
+
+	/**
+	 * Posts a new best move. Never blocks.
+	 */
+	public void post(M move) {
+		mailbox.set(move);
+
+		if (!observed) {
+			return;
+		}
+		if (delivering.compareAndSet(false, true)) {
+			startDelivery();
+		}
+		else {
+			LockSupport.unpark(deliveryThread);
+		}
+	}
+
+	/**
+	 * @return the latest move posted since the last poll, or null if there isn't one.
+	 */
+	public M poll() {
+		return mailbox.getAndSet(null);
+	}
+
+	public synchronized void addObserver(Observer o) {
+		super.addObserver(o);
+		observed = true;
+	}
+
+	public synchronized void deleteObservers() {
+		super.deleteObservers();
+		observed = false;
+	}
+
+	private void startDelivery() {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				deliver();
+			}
+		}, "Best move publisher");
+		thread.setDaemon(true);
+		deliveryThread = thread;
+		thread.start();
+	}
+
+	// Passes moves to the observers until the mailbox has been empty for a while
+	private void deliver() {
+		while (true) {
+			M move = poll();
+			if (move != null) {
+				setChanged();
+				notifyObservers(move);
+				continue;
+			}
+
+			long idleStart = System.nanoTime();
+			while (mailbox.get() == null && System.nanoTime() - idleStart < IDLE_NANOS) {
+				LockSupport.parkNanos(this, IDLE_NANOS);
+			}
+
+			// Stop, unless a move came in while we were stopping
+			if (mailbox.get() == null) {
+				delivering.set(false);
+				if (mailbox.get() == null || !delivering.compareAndSet(false, true)) {
+					return;
+				}
+			}
+		}
+	}
+}
@@ -15,6 +15,15 @@ public class BoardCount {
 		map = new HashMap<Long, Count>();
 	}
 	
+	// A copy with its own counts
+	public BoardCount copy() {
+		BoardCount copy = new BoardCount();
+		for (Map.Entry<Long, Count> entry : map.entrySet()) {
+			copy.map.put(entry.getKey(), new Count(entry.getValue().getValue()));
+		}
+		return copy;
+	}
+	
 	public int increment(Board board) {
 		Count count = map.get(board.signature());
 		if(count != null) {
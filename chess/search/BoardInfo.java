@@ -32,6 +32,13 @@ public class BoardInfo<M extends Move<M>> {
 		this.secondBestMove = null;		
 	}
 
+	// Restores an entry with both moves, as kept by SharedTranspositionTable
+	BoardInfo(int value, M move, int type, int depth, M secondMove, int secondMoveDepth) {
+		this(value, move, type, depth);
+		this.secondBestMove = secondMove;
+		this.secondMoveDepth = secondMoveDepth;
+	}
+
 	// Accessors
 	public int getValue() {
 		return value;
@@ -53,6 +60,10 @@ public class BoardInfo<M extends Move<M>> {
 		return type;
 	}
 
+	int getSecondMoveDepth() {
+		return secondMoveDepth;
+	}
+
 	// Replace when we have a better value (bigger depth)
 	// Only replace the second best move if it's different from
 	// the best move.
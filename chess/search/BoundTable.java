@@ -0,0 +1,115 @@
+package chess.search;
+
+import chess.board.Move;
+
+/**
+ *
+ * A fixed size transposition table that keeps both a lower and an upper bound
+ * for each position, which is what MTD(f) needs since it only ever does null
+ * window searches. Entries are kept in parallel arrays indexed by the low bits
+ * of the board signature, so there are no objects to allocate per entry.
+ * A new result replaces the stored entry unless the stored one is deeper.
+ *
+ */
+public class BoundTable<M extends Move<M>> {
+
+	private final int mask;
+	private final int infinity;
+	private final long[] keys;
+	private final int[] lowerBounds;
+	private final int[] upperBounds;
+	private final byte[] depths;
+	private final Object[] moves;
+
+	/**
+	 * @param bits the table holds 2^bits entries.
+	 * @param infinity the value of an unknown bound.
+	 */
+	public BoundTable(int bits, int infinity) {
+		int size = 1 << bits;
+		mask = size - 1;
+		keys = new long[size];
+		lowerBounds = new int[size];
+		upperBounds = new int[size];
+		depths = new byte[size];
+		moves = new Object[size];
+		this.infinity = infinity;
+		clear();
+	}
+
+	// Empties the table
+	public void clear() {
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = 0;
+			lowerBounds[i] = -infinity;
+			upperBounds[i] = infinity;
+			depths[i] = -1;
+			moves[i] = null;
+		}
+	}
+
+	// Index of the entry for this signature, or -1 if it isn't stored
+	public int find(long signature) {
+		int index = (int) signature & mask;
+		return (keys[index] == signature && depths[index] >= 0) ? index : -1;
+	}
+
+	// Accessors, by the index find() returned
+	public int getLowerBound(int index) {
+		return lowerBounds[index];
+	}
+
+	public int getUpperBound(int index) {
+		return upperBounds[index];
+	}
+
+	public int getDepth(int index) {
+		return depths[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	public M getMove(int index) {
+		return (M) moves[index];
+	}
+
+	/**
+	 * Stores the result of a search between alpha and beta. A result at or below
+	 * alpha is an upper bound, and one at or above beta is a lower bound. Results
+	 * at the same depth as the stored entry narrow its bounds instead of replacing them.
+	 */
+	public void store(long signature, int depth, int alpha, int beta, int value, M move) {
+		int index = (int) signature & mask;
+
+		// Keep deeper entries
+		if (depths[index] > depth) {
+			return;
+		}
+
+		// Bounds from a different depth don't mix
+		if (keys[index] != signature || depths[index] != depth) {
+			if (keys[index] != signature) {
+				moves[index] = null;
+			}
+			keys[index] = signature;
+			lowerBounds[index] = -infinity;
+			upperBounds[index] = infinity;
+			depths[index] = (byte) Math.min(depth, Byte.MAX_VALUE);
+		}
+
+		if (value <= alpha) {
+			upperBounds[index] = value;
+		}
+		else if (value >= beta) {
+			lowerBounds[index] = value;
+		}
+		else {
+			lowerBounds[index] = value;
+			upperBounds[index] = value;
+		}
+
+		// Only fail highs and exact results know which move was best
+		if (move != null && value > alpha) {
+			moves[index] = move;
+		}
+	}
+}
@@ -7,6 +7,10 @@ public class Count {
 	public Count() {
 		count = 1;
 	}
+
+	public Count(int count) {
+		this.count = count;
+	}
 	
 	// Accessors
 	public int getValue() {
@@ -0,0 +1,111 @@
+package chess.search;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ *
+ * A Timer that budgets the CPU time of the searching thread, rather than the
+ * time on the wall clock, so a move searches about as far however busy the
+ * machine is. Helper threads aren't counted. The wall clock still caps each
+ * move at a few times its budget, and stops the search before the game clock
+ * runs out, so a starved engine can't lose on time.
+ *
+ * Must be started and checked on the searching thread. Falls back to the wall
+ * clock if the JVM can't measure thread CPU time.
+ *
+ */
+public class CpuTimer implements Timer {
+
+	private int  increment;
+	private long startCpuTime;
+	private long startTime;
+	private long allocated;
+	private long wallCap;
+	private long endGameTime;
+	private boolean noTimeup;
+	private int moveNumber;
+	private int timeRemaining;
+	private ThreadMXBean bean;
+
+	private static final long NANOS_PER_MILLI = 1000000;
+
+	// When we're super low on time, force timeout so we don't autolose
+	private static final int FORCE_TIMEOUT_TIME = 2000;
+
+	// When we're running low on time, let searcher know to hurry up
+	private static final int HURRY_UP_TIME = 10000;
+
+	// The moves we budget for shrink as the game goes on, but we always keep
+	// enough for this many, since we can't tell how long the game will be
+	private static final int TOTAL_MOVES = 60;
+	private static final int MIN_MOVES_LEFT = 20;
+
+	// A move may take this many times its budget on the wall clock, for when
+	// the machine is too busy to give us the CPU time
+	private static final int WALL_CAP_FACTOR = 3;
+
+	public CpuTimer(int initialTime, int increment) {
+		this.increment = increment;
+		moveNumber = 0;
+		bean = ManagementFactory.getThreadMXBean();
+	}
+
+	public void start(int myTime, int opTime) {
+		timeRemaining = myTime;
+		startTime = System.nanoTime();
+		startCpuTime = cpuTime();
+		endGameTime = startTime + myTime * NANOS_PER_MILLI;
+		noTimeup = true;
+		moveNumber++;
+		allocateTime();
+	}
+
+	public boolean timeup() {
+		long now = System.nanoTime();
+
+		// Force it to timeup when we're almost out of time, or the
+		// machine is too busy for us to use our CPU time
+		if ((endGameTime - now) <= FORCE_TIMEOUT_TIME * NANOS_PER_MILLI) {
+			return true;
+		}
+		else if (noTimeup) {
+			return false;
+		}
+		else if (now - startTime > wallCap) {
+			return true;
+		}
+		return cpuTime() - startCpuTime > allocated;
+	}
+
+	// The CPU time of this thread, or the wall clock if it can't be measured
+	private long cpuTime() {
+		if (bean.isCurrentThreadCpuTimeSupported()) {
+			return bean.getCurrentThreadCpuTime();
+		}
+		return System.nanoTime();
+	}
+
+	// Spread the time left over the moves we expect, and keep most of the
+	// increment. The wall clock cap can't be more than we can safely use
+	private void allocateTime() {
+		int movesLeft = Math.max(TOTAL_MOVES - moveNumber, MIN_MOVES_LEFT);
+		long target = (long) (timeRemaining / movesLeft + 0.9 * increment);
+		long usable = Math.max(timeRemaining - FORCE_TIMEOUT_TIME, 0);
+
+		allocated = Math.min(target, usable) * NANOS_PER_MILLI;
+		wallCap = Math.min(WALL_CAP_FACTOR * target, usable) * NANOS_PER_MILLI;
+	}
+
+	public boolean hurryUp() {
+		return timeRemaining < HURRY_UP_TIME;
+	}
+
+	public void notOkToTimeup() {
+		noTimeup = true;
+	}
+
+	public void okToTimeup() {
+		noTimeup = false;
+	}
+}
@@ -18,17 +18,28 @@ public class DFS
 >
 	extends AbstractSearcher<M,B>
 {
+	// Search listeners get statistics every time this many more nodes are visited
+	private final long STATISTICS_INTERVAL = 1 << 16;
+	
 	public M getBestMove(B board, int myTime, int opTime)
 	{
 		nodeCount = 0;
 		leafCount = 0;
+		startSearchInfo();
+		fireIterationStarted(maxDepth);
 		dfs(board, maxDepth);
+		fireIterationFinished();
 		return null; // DFS doesn't look for a best move
 	}
 
 	private int dfs(B board, int pliesToGo)
 	{
     ++nodeCount;
+    
+    if (nodeCount % STATISTICS_INTERVAL == 0)
+    {
+      fireStatistics();
+    }
 	  
 		if (pliesToGo == 0)
 		{
@@ -0,0 +1,196 @@
+package chess.search;
+
+/**
+ *
+ * A Timer with a soft and a hard limit. The soft limit is what a move should
+ * take, and only decides whether to start another iteration. It shrinks while
+ * the best move stays the same, and grows when the best move changes, the
+ * score drops or the root fails low. An iteration that the branching factor
+ * says can't finish before the hard limit isn't started. The hard limit stops
+ * the search even in the middle of an iteration.
+ *
+ */
+public class DynamicTimer implements TimeManager {
+
+	private int increment;
+	private long startTime;
+	private long endGameTime;
+	private boolean noTimeup;
+	private int moveNumber;
+	private int timeRemaining;
+	private int softLimit;
+	private int hardLimit;
+
+	// How the iterations of this move went
+	private long iterationStart;
+	private long lastIterationNanos;
+	private double branchingFactor;
+	private int stableIterations;
+	private double scoreFactor;
+	private boolean failedLow;
+
+	// When we're super low on time, force timeout so we don't autolose
+	private static final int FORCE_TIMEOUT_TIME = 2000;
+
+	// When we're running low on time, let searcher know to hurry up
+	private static final int HURRY_UP_TIME = 10000;
+
+	// The moves we budget for shrink as the game goes on, but we always keep
+	// enough for this many, since we can't tell how long the game will be
+	private static final int TOTAL_MOVES = 60;
+	private static final int MIN_MOVES_LEFT = 20;
+	private static final double SOFT_LIMIT_BIAS = 1.2;
+
+	// The hard limit is this many soft limits, but never more than this
+	// share of the time left
+	private static final int HARD_LIMIT_FACTOR = 4;
+	private static final int HARD_LIMIT_SHARE = 5;
+
+	// The soft limit after a best move change, shrinking for each iteration
+	// it stays the same, down to the minimum
+	private static final double CHANGED_FACTOR = 1.3;
+	private static final double STABLE_STEP = 0.2;
+	private static final double STABLE_MIN_FACTOR = 0.5;
+
+	// Score drops, in hundredths of a pawn, that stretch the soft limit
+	private static final int SCORE_DROP = 30;
+	private static final int BIG_SCORE_DROP = 100;
+	private static final double SCORE_DROP_FACTOR = 1.5;
+	private static final double BIG_SCORE_DROP_FACTOR = 2.0;
+	private static final double FAIL_LOW_FACTOR = 2.0;
+
+	// Branching factor assumed until two iterations took measurable time,
+	// and the bounds on the measured one
+	private static final double DEFAULT_BRANCHING_FACTOR = 4.0;
+	private static final double MIN_BRANCHING_FACTOR = 1.5;
+	private static final double MAX_BRANCHING_FACTOR = 10.0;
+
+	private static final long NANOS_PER_MILLI = 1000000;
+
+	// Iterations shorter than this are too noisy to measure the branching factor
+	private static final long MIN_MEASURED_NANOS = NANOS_PER_MILLI;
+
+	public DynamicTimer(int initialTime, int increment) {
+		this.increment = increment;
+		moveNumber = 0;
+	}
+
+	public void start(int myTime, int opTime) {
+		timeRemaining = myTime;
+		startTime = System.nanoTime();
+		endGameTime = startTime + myTime * NANOS_PER_MILLI;
+		noTimeup = true;
+		moveNumber++;
+		allocateTime();
+
+		iterationStart = startTime;
+		lastIterationNanos = 0;
+		branchingFactor = DEFAULT_BRANCHING_FACTOR;
+		stableIterations = 0;
+		scoreFactor = 1.0;
+		failedLow = false;
+	}
+
+	// Only the hard limit stops an iteration
+	public boolean timeup() {
+
+		// Force it to timeup when we're almost out of time
+		if ((endGameTime - System.nanoTime()) <= FORCE_TIMEOUT_TIME * NANOS_PER_MILLI) {
+			return true;
+		}
+		else if (noTimeup) {
+			return false;
+		}
+		return elapsed() >= hardLimit;
+	}
+
+	public boolean nextIteration() {
+		if (noTimeup) {
+			return true;
+		}
+
+		long elapsed = elapsed();
+		double factor = softFactor();
+
+		// A fail low only stretches the decision that comes after it
+		failedLow = false;
+		if (elapsed >= Math.min(softLimit * factor, hardLimit)) {
+			return false;
+		}
+
+		// Don't start what we'd have to throw away
+		long predicted = (long) (lastIterationNanos * branchingFactor / NANOS_PER_MILLI);
+		return elapsed + predicted <= hardLimit;
+	}
+
+	public void iterationFinished(boolean bestMoveChanged, int scoreDrop) {
+		long now = System.nanoTime();
+		long iterationNanos = now - iterationStart;
+		iterationStart = now;
+
+		if (lastIterationNanos >= MIN_MEASURED_NANOS) {
+			double measured = (double) iterationNanos / lastIterationNanos;
+			branchingFactor = Math.max(MIN_BRANCHING_FACTOR, Math.min(measured, MAX_BRANCHING_FACTOR));
+		}
+		lastIterationNanos = iterationNanos;
+
+		stableIterations = bestMoveChanged ? 0 : stableIterations + 1;
+
+		if (scoreDrop >= BIG_SCORE_DROP) {
+			scoreFactor = BIG_SCORE_DROP_FACTOR;
+		}
+		else if (scoreDrop >= SCORE_DROP) {
+			scoreFactor = SCORE_DROP_FACTOR;
+		}
+		else {
+			scoreFactor = 1.0;
+		}
+	}
+
+	public void failLow() {
+		failedLow = true;
+	}
+
+	// How far the soft limit is stretched or shrunk
+	private double softFactor() {
+		double factor = Math.max(CHANGED_FACTOR - STABLE_STEP * stableIterations, STABLE_MIN_FACTOR);
+		factor *= scoreFactor;
+		if (failedLow) {
+			factor *= FAIL_LOW_FACTOR;
+		}
+		return factor;
+	}
+
+	public int hardLimit() {
+		return hardLimit;
+	}
+
+	// In milliseconds, from System.nanoTime() so it can't jump with the wall clock
+	private long elapsed() {
+		return (System.nanoTime() - startTime) / NANOS_PER_MILLI;
+	}
+
+	// Spread the time left over the moves we expect, and keep most of the increment.
+	// Each move gets a little more than its share, since stable moves give some back
+	private void allocateTime() {
+		int movesLeft = Math.max(TOTAL_MOVES - moveNumber, MIN_MOVES_LEFT);
+		softLimit = (int) (SOFT_LIMIT_BIAS * timeRemaining / movesLeft + 0.9 * increment);
+
+		int usable = Math.max(timeRemaining - FORCE_TIMEOUT_TIME, 0);
+		hardLimit = Math.min(HARD_LIMIT_FACTOR * softLimit, usable / HARD_LIMIT_SHARE + increment);
+		hardLimit = Math.min(Math.max(hardLimit, softLimit), usable);
+		softLimit = Math.min(softLimit, hardLimit);
+	}
+
+	public boolean hurryUp() {
+		return timeRemaining < HURRY_UP_TIME;
+	}
+
+	public void notOkToTimeup() {
+		noTimeup = true;
+	}
+
+	public void okToTimeup() {
+		noTimeup = false;
+	}
+}
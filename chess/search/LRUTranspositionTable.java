@@ -0,0 +1,41 @@
+package chess.search;
+
+import chess.board.Move;
+import chess.util.LRUMap;
+
+/**
+ *
+ * A transposition table for a single thread, that drops the least recently
+ * used entry once it's full. Entries are kept as they were put, moves and all.
+ *
+ */
+public class LRUTranspositionTable<M extends Move<M>> implements TranspositionTable<M> {
+
+	private final int maxEntries;
+	private final LRUMap<Long, BoardInfo<M>> map;
+
+	public LRUTranspositionTable(int initialEntries, int maxEntries, float loadFactor) {
+		this.maxEntries = maxEntries;
+		map = new LRUMap<Long, BoardInfo<M>>(initialEntries, maxEntries, loadFactor);
+	}
+
+	public BoardInfo<M> get(long signature) {
+		return map.get(signature);
+	}
+
+	public void put(long signature, BoardInfo<M> boardInfo) {
+		map.put(signature, boardInfo);
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	public int hashFull() {
+		return (int) (1000L * map.size() / maxEntries);
+	}
+
+	public void clear() {
+		map.clear();
+	}
+}
@@ -0,0 +1,452 @@
+package chess.search;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import chess.board.Board;
+import chess.board.Move;
+import chess.gui.Config;
+
+/**
+ * A chess searcher that uses Monte Carlo tree search:
+ *
+ * PUCT selection, with priors from a softmax of the evaluation after each move
+ * Leaf values from a short quiescence search instead of random playouts
+ * Tree parallelism, with virtual loss to spread threads over the tree
+ * Tree reuse between moves, by re-rooting at the position we're given
+ * Memory budget for the tree (MCTSTree)
+ *
+ * Depth settings don't apply. It plays out until the timer runs out, or
+ * until the playout limit if one is set, and picks the most visited move.
+ *
+ * Resources:
+ * Silver et al., "Mastering the game of Go without human knowledge" (2017)
+ * Chaslot, Winands and van den Herik, "Parallel Monte-Carlo Tree Search" (2008)
+ */
+public class MCTS<M extends Move<M>, B extends Board<M,B>>
+extends AbstractSearcher<M,B> {
+
+	// Exploration constant for PUCT
+	private final double CPUCT = 1.5;
+
+	// Unvisited children are valued at their parent's value less this
+	private final double FPU_REDUCTION = 0.2;
+
+	// Each thread on a node counts as this many lost visits
+	private final int VIRTUAL_LOSS = 3;
+
+	// Centipawns per unit for priors and for mapping scores to [-1, 1]
+	private final double PRIOR_SCALE = 100;
+	private final double VALUE_SCALE = 300;
+
+	// How deep the quiescence search at a leaf goes
+	private final int QUIESCENCE_DEPTH = 4;
+
+	// How often, in playouts, the main thread looks for a new best move
+	private final int REPORT_INTERVAL = 1000;
+
+	private MCTSTree<M> tree;
+	private long memoryBudget = 64L * 1024 * 1024;
+	private int threads = 1;
+	private int playoutLimit;
+	private boolean treeReuse = true;
+
+	private volatile boolean stopped;
+	private long playoutCount;
+
+	/**
+	 * Sets how many threads search at once, including the calling
+	 * thread. Defaults to 1.
+	 *
+	 * @param threads the number of search threads.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(threads, 1);
+	}
+
+	/**
+	 * Sets how much memory the tree may use. Once it's full the search
+	 * keeps refining the values of the nodes it has. Defaults to 64 MB.
+	 *
+	 * @param bytes the memory budget in bytes.
+	 */
+	public void setMemoryBudget(long bytes) {
+		memoryBudget = bytes;
+	}
+
+	/**
+	 * Stops the search after this many playouts, counting any the root
+	 * already had from the last move. 0 means no limit, which is the default.
+	 *
+	 * @param playouts the playout limit.
+	 */
+	public void setPlayoutLimit(int playouts) {
+		playoutLimit = playouts;
+	}
+
+	/**
+	 * Keeps the subtree of the position we're given from the last search.
+	 * On by default.
+	 */
+	public void setTreeReuse(boolean treeReuse) {
+		this.treeReuse = treeReuse;
+	}
+
+	/**
+	 * @return The number of playouts made in the last search.
+	 */
+	public long playoutCount() {
+		return playoutCount;
+	}
+
+	/**
+	 * @return The number of nodes in the tree.
+	 */
+	public int treeSize() {
+		return tree == null ? 0 : tree.size();
+	}
+
+	public M getBestMove(B board, int myTime, int opTime) {
+		nodeCount = 0;
+		playoutCount = 0;
+		stopped = false;
+		clearStopRequest();
+
+		int capacity = (int) Math.min(memoryBudget / MCTSTree.NODE_BYTES, Integer.MAX_VALUE);
+		if (tree == null || tree.capacity() != capacity) {
+			tree = new MCTSTree<M>(capacity);
+		}
+		findRoot(board);
+
+		timer.start(myTime, opTime);
+		timer.notOkToTimeup();
+
+		Worker main = new Worker(board, 0);
+		if (!tree.isExpanded(0)) {
+			main.playout();
+		}
+
+		// Should never be called if we don't have any moves left
+		if (tree.getChildCount(0) == 0) {
+			throw new IllegalStateException();
+		}
+
+		List<Worker> helpers = new ArrayList<Worker>();
+		List<Thread> helperThreads = new ArrayList<Thread>();
+		for (int i = 1; i < threads; i++) {
+			final Worker helper = new Worker(board.copy(), i);
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					while (!stopped) {
+						if (!helper.playout()) {
+							break;
+						}
+					}
+				}
+			}, "MCTS worker " + i);
+			thread.setDaemon(true);
+			thread.start();
+			helpers.add(helper);
+			helperThreads.add(thread);
+		}
+
+		int bestChild = mostVisitedChild();
+		reportNewBestMove(tree.getMove(bestChild).copy());
+
+		while (!stopRequested() && !timer.timeup() && main.playout()) {
+
+			// Every move has had a look, so timeup regularly
+			if (tree.getVisits(0) >= tree.getChildCount(0)) {
+				timer.okToTimeup();
+			}
+
+			if (main.playouts % REPORT_INTERVAL == 0) {
+				int child = mostVisitedChild();
+				if (child != bestChild) {
+					bestChild = child;
+					reportNewBestMove(tree.getMove(bestChild).copy());
+				}
+			}
+		}
+
+		stopped = true;
+		for (Thread thread : helperThreads) {
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		nodeCount = main.nodes;
+		playoutCount = main.playouts;
+		for (Worker helper : helpers) {
+			nodeCount += helper.nodes;
+			playoutCount += helper.playouts;
+		}
+
+		bestChild = mostVisitedChild();
+		if (Config.debug) {
+			NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+			System.out.println("Playouts: " + format.format(playoutCount) + ", nodes searched: " +
+					format.format(nodeCount) + ", tree size: " + format.format(tree.size()) +
+					" of " + format.format(tree.capacity()) + ", best move value: " + tree.getValue(bestChild));
+		}
+		return tree.getMove(bestChild).copy();
+	}
+
+	// Re-roots the tree at the board's position if the last search reached it.
+	// It's usually a grandchild of the old root, after our move and theirs
+	private void findRoot(B board) {
+		long signature = board.signature();
+
+		if (treeReuse && tree.size() > 0) {
+			if (tree.getSignature(0) == signature) {
+				return;
+			}
+			for (int child = firstChild(0); child < endChild(0); child++) {
+				if (tree.getSignature(child) == signature) {
+					tree.reroot(child);
+					return;
+				}
+				for (int grandchild = firstChild(child); grandchild < endChild(child); grandchild++) {
+					if (tree.getSignature(grandchild) == signature) {
+						tree.reroot(grandchild);
+						return;
+					}
+				}
+			}
+		}
+		tree.createRoot(signature);
+	}
+
+	private int firstChild(int node) {
+		return tree.isExpanded(node) ? tree.getFirstChild(node) : 0;
+	}
+
+	private int endChild(int node) {
+		return tree.isExpanded(node) ? tree.getFirstChild(node) + tree.getChildCount(node) : 0;
+	}
+
+	private synchronized int mostVisitedChild() {
+		int best = tree.getFirstChild(0);
+		for (int child = firstChild(0); child < endChild(0); child++) {
+			if (tree.getVisits(child) > tree.getVisits(best)) {
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	// Walks down from the root by PUCT, adding virtual loss on the way,
+	// and fills in the path. Returns false if we've hit the playout limit
+	private synchronized boolean select(List<Integer> path) {
+		if (playoutLimit > 0 && tree.getVisits(0) >= playoutLimit) {
+			return false;
+		}
+
+		int node = 0;
+		while (tree.isExpanded(node) && tree.getChildCount(node) > 0) {
+			node = selectChild(node);
+			tree.addVirtualLoss(node, VIRTUAL_LOSS);
+			path.add(node);
+		}
+		return true;
+	}
+
+	private int selectChild(int node) {
+		int parentVisits = tree.getVisits(node) + tree.getVirtualLoss(node);
+		double exploration = CPUCT * Math.sqrt(Math.max(parentVisits, 1));
+
+		// Our value at the node is the opposite of the value stored for it
+		double firstPlayUrgency = -tree.getValue(node) - FPU_REDUCTION;
+
+		int best = -1;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (int child = firstChild(node); child < endChild(node); child++) {
+			int visits = tree.getVisits(child) + tree.getVirtualLoss(child);
+			double value = (visits == 0) ? firstPlayUrgency :
+				(tree.getValueSum(child) - tree.getVirtualLoss(child)) / visits;
+			double score = value + exploration * tree.getPrior(child) / (1 + visits);
+
+			if (score > bestScore) {
+				bestScore = score;
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	// Expands the leaf if no other thread beat us to it. Returns false if the tree is full
+	private synchronized boolean expand(int node, List<M> moves, float[] priors, long signature) {
+		if (tree.isExpanded(node)) {
+			return true;
+		}
+		return tree.expand(node, moves, priors, signature);
+	}
+
+	// Backs the leaf's value up the path and takes the virtual loss off again.
+	// value is from the side that moved into the leaf
+	private synchronized void backup(List<Integer> path, double value) {
+		for (int i = path.size() - 1; i >= 0; i--) {
+			int node = path.get(i);
+			tree.update(node, value);
+			tree.addVirtualLoss(node, -VIRTUAL_LOSS);
+			value = -value;
+		}
+		tree.update(0, value);
+	}
+
+	// One search thread, with its own board
+	private class Worker {
+		private final B board;
+		private final int index;
+		private final List<Integer> path = new ArrayList<Integer>();
+		private long nodes;
+		private long playouts;
+
+		public Worker(B board, int index) {
+			this.board = board;
+			this.index = index;
+		}
+
+		// Selects a leaf, expands and evaluates it, and backs its value up.
+		// Returns false if we've hit the playout limit
+		public boolean playout() {
+			path.clear();
+			if (!select(path)) {
+				return false;
+			}
+			playouts++;
+
+			// The tree's moves are its own copies, which boards copy pieces from
+			for (int node : path) {
+				board.applyMove(tree.getMove(node));
+			}
+
+			int leaf = path.isEmpty() ? 0 : path.get(path.size() - 1);
+			double value = evaluateLeaf(leaf);
+
+			for (int i = 0; i < path.size(); i++) {
+				board.undoMove();
+			}
+
+			backup(path, -value);
+			return true;
+		}
+
+		// Value of the leaf from the side to move, in [-1, 1]
+		private double evaluateLeaf(int leaf) {
+			List<M> moves = generateMoves(board);
+
+			if (moves.isEmpty()) {
+				expand(leaf, moves, new float[0], board.signature());
+				return board.inCheck() ? -1 : 0;
+			}
+
+			if (!tree.isExpanded(leaf) && !expand(leaf, moves, priors(moves), board.signature())) {
+				if (Config.debug && index == 0 && playouts % REPORT_INTERVAL == 0) {
+					System.out.println("MCTS tree is full at " + tree.size() + " nodes");
+				}
+			}
+
+			int score = quiescenceSearch(QUIESCENCE_DEPTH, -evaluator.infty(), evaluator.infty());
+			return Math.tanh(score / VALUE_SCALE);
+		}
+
+		// Softmax over the evaluation after each move
+		private float[] priors(List<M> moves) {
+			double[] scores = new double[moves.size()];
+			double max = Double.NEGATIVE_INFINITY;
+
+			for (int i = 0; i < moves.size(); i++) {
+				board.applyMove(moves.get(i));
+				nodes++;
+				scores[i] = -evaluator.eval(board) / PRIOR_SCALE;
+				board.undoMove();
+				max = Math.max(max, scores[i]);
+			}
+
+			double sum = 0;
+			for (int i = 0; i < scores.length; i++) {
+				scores[i] = Math.exp(scores[i] - max);
+				sum += scores[i];
+			}
+
+			float[] priors = new float[scores.length];
+			for (int i = 0; i < scores.length; i++) {
+				priors[i] = (float) (scores[i] / sum);
+			}
+			return priors;
+		}
+
+		// Quiescence Search - keeps looking at captures until the position is
+		// quiet, so we don't evaluate in the middle of an exchange
+		private int quiescenceSearch(int depth, int alpha, int beta) {
+			nodes++;
+			int standPat = evaluator.eval(board);
+
+			if (depth == 0 || standPat >= beta) {
+				return standPat;
+			}
+
+			int bestValue = standPat;
+			if (standPat > alpha) {
+				alpha = standPat;
+			}
+
+			for (M move : generateNonQuietMoves(board)) {
+				board.applyMove(move);
+				int value = -quiescenceSearch(depth - 1, -beta, -alpha);
+				board.undoMove();
+
+				if (value > bestValue) {
+					bestValue = value;
+				}
+				if (bestValue > alpha) {
+					alpha = bestValue;
+				}
+
+				// Alpha-beta pruning
+				if (bestValue >= beta) {
+					break;
+				}
+			}
+			return bestValue;
+		}
+	}
+
+	// Legal moves
+	private LinkedList<M> generateMoves(B board) {
+		List<M> psmoves = board.generatePseudoMoves();
+		LinkedList<M> moves = new LinkedList<M>();
+		Set<M> setmoves = new HashSet<M>(256);
+
+		for (M m : psmoves) {
+			if (setmoves.add(m) && board.isLegalPseudoMove(m)) {
+				moves.add(m);
+			}
+		}
+		return moves;
+	}
+
+	// Legal captures and promotions
+	private LinkedList<M> generateNonQuietMoves(B board) {
+		List<M> psmoves = board.generatePseudoMoves();
+		LinkedList<M> moves = new LinkedList<M>();
+		Set<M> setmoves = new HashSet<M>(256);
+
+		for (M m : psmoves) {
+			if (setmoves.add(m) && board.isLegalPseudoMove(m) &&
+					(m.isCapture() || m.isEnpassant() || m.isPromotion())) {
+				moves.add(m);
+			}
+		}
+		return moves;
+	}
+}
@@ -0,0 +1,202 @@
+package chess.search;
+
+import java.util.List;
+
+import chess.board.Move;
+
+/**
+ *
+ * The tree of a Monte Carlo tree search, kept in parallel arrays so a node is
+ * an index rather than an object. The children of a node are stored next to
+ * each other, after their parent. The root is always node 0, and each node's
+ * value is from the side that made the move into it.
+ *
+ * Not thread safe, so callers share it under a lock.
+ *
+ */
+public class MCTSTree<M extends Move<M>> {
+
+	/**
+	 * Rough memory used per node, including the move object it holds.
+	 */
+	public static final int NODE_BYTES = 128;
+
+	private final int[] parents;
+	private final int[] firstChildren;
+	private final int[] childCounts;
+	private final int[] visits;
+	private final int[] virtualLosses;
+	private final float[] priors;
+	private final double[] valueSums;
+	private final long[] signatures;
+	private final Object[] moves;
+	private int size;
+
+	/**
+	 * @param capacity the most nodes the tree can hold.
+	 */
+	public MCTSTree(int capacity) {
+		parents = new int[capacity];
+		firstChildren = new int[capacity];
+		childCounts = new int[capacity];
+		visits = new int[capacity];
+		virtualLosses = new int[capacity];
+		priors = new float[capacity];
+		valueSums = new double[capacity];
+		signatures = new long[capacity];
+		moves = new Object[capacity];
+	}
+
+	public int capacity() {
+		return parents.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// Empties the tree and adds a root for the position with this signature
+	public void createRoot(long signature) {
+		for (int i = 0; i < size; i++) {
+			moves[i] = null;
+		}
+		size = 0;
+		addNode(-1, null, 1);
+		signatures[0] = signature;
+	}
+
+	/**
+	 * Adds children for these moves under the node, with their prior
+	 * probabilities. A node expanded with no moves is a terminal node.
+	 * The tree keeps copies of the moves, since the moves passed in belong
+	 * to the expanding thread's board, and change as it moves its pieces.
+	 *
+	 * @return false if there isn't room for the children.
+	 */
+	public boolean expand(int node, List<M> childMoves, float[] childPriors, long signature) {
+		if (size + childMoves.size() > capacity()) {
+			return false;
+		}
+
+		firstChildren[node] = size;
+		childCounts[node] = childMoves.size();
+		signatures[node] = signature;
+		for (int i = 0; i < childMoves.size(); i++) {
+			addNode(node, childMoves.get(i).copy(), childPriors[i]);
+		}
+		return true;
+	}
+
+	private void addNode(int parent, M move, float prior) {
+		parents[size] = parent;
+		firstChildren[size] = -1;
+		childCounts[size] = 0;
+		visits[size] = 0;
+		virtualLosses[size] = 0;
+		priors[size] = prior;
+		valueSums[size] = 0;
+		signatures[size] = 0;
+		moves[size] = move;
+		size++;
+	}
+
+	// Accessors, by node index
+	public boolean isExpanded(int node) {
+		return firstChildren[node] >= 0;
+	}
+
+	public int getFirstChild(int node) {
+		return firstChildren[node];
+	}
+
+	public int getChildCount(int node) {
+		return childCounts[node];
+	}
+
+	public int getVisits(int node) {
+		return visits[node];
+	}
+
+	public int getVirtualLoss(int node) {
+		return virtualLosses[node];
+	}
+
+	public float getPrior(int node) {
+		return priors[node];
+	}
+
+	public double getValueSum(int node) {
+		return valueSums[node];
+	}
+
+	// Signature of the position at the node, or 0 if it was never expanded
+	public long getSignature(int node) {
+		return signatures[node];
+	}
+
+	@SuppressWarnings("unchecked")
+	public M getMove(int node) {
+		return (M) moves[node];
+	}
+
+	// Mean value of the node, or 0 if it hasn't been visited
+	public double getValue(int node) {
+		return visits[node] == 0 ? 0 : valueSums[node] / visits[node];
+	}
+
+	public void update(int node, double value) {
+		visits[node]++;
+		valueSums[node] += value;
+	}
+
+	public void addVirtualLoss(int node, int loss) {
+		virtualLosses[node] += loss;
+	}
+
+	/**
+	 * Makes the node the new root, dropping everything outside its subtree.
+	 * Children are always stored after their parent, so copying the kept
+	 * nodes down in index order never overwrites a node still to be copied.
+	 */
+	public void reroot(int root) {
+		int[] remap = new int[size];
+		int kept = 0;
+
+		// A node is kept if it's the root or its parent was kept
+		for (int i = root; i < size; i++) {
+			if (i == root || (parents[i] >= root && remap[parents[i]] >= 0)) {
+				remap[i] = kept++;
+			}
+			else {
+				remap[i] = -1;
+			}
+		}
+
+		for (int i = root; i < size; i++) {
+			int n = remap[i];
+			if (n < 0) {
+				continue;
+			}
+			parents[n] = (i == root) ? -1 : remap[parents[i]];
+			if (firstChildren[i] < 0 || childCounts[i] == 0) {
+				firstChildren[n] = Math.min(firstChildren[i], 0);
+			}
+			else {
+				firstChildren[n] = remap[firstChildren[i]];
+			}
+			childCounts[n] = childCounts[i];
+			visits[n] = visits[i];
+			virtualLosses[n] = 0;
+			priors[n] = priors[i];
+			valueSums[n] = valueSums[i];
+			signatures[n] = signatures[i];
+			moves[n] = moves[i];
+		}
+
+		for (int i = kept; i < size; i++) {
+			moves[i] = null;
+		}
+		moves[0] = null;
+		size = kept;
+	}
+}
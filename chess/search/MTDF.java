@@ -0,0 +1,354 @@
+package chess.search;
+
+import java.text.NumberFormat;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import chess.board.Board;
+import chess.board.Move;
+import chess.gui.Config;
+
+/**
+ * A chess searcher that uses MTD(f):
+ *
+ * Iterative Deepening
+ * Null window searches, starting from the previous iteration's score
+ * Transposition Table storing both bounds (BoundTable)
+ * Quiescence Search (captures and promotions, optional)
+ * Move ordering (hash move, then captures and promotions)
+ *
+ * Every pass is a null window alpha-beta search, so it only works well with
+ * a table that remembers both bounds between passes.
+ *
+ * Resources:
+ * http://people.csail.mit.edu/plaat/mtdf.html
+ */
+public class MTDF<M extends Move<M>, B extends Board<M,B>>
+extends AbstractSearcher<M,B> {
+
+	// The table holds 2^TABLE_BITS entries
+	private final int TABLE_BITS = 20;
+	private BoundTable<M> table;
+
+	// How deep our quiescence search goes
+	private int quiescenceDepth = 8;
+
+	// Mate scores are evaluator.mate() + MAX_PLY less the plies to the mate,
+	// so they stay beyond evaluator.mate() and below infinity
+	private final int MAX_PLY = 1000;
+
+	// Distance from the root of the node being searched
+	private int ply;
+
+	// Number of null window passes in the last search
+	private int passCount;
+
+	private B board;
+
+	public M getBestMove(B board, int myTime, int opTime) {
+		nodeCount = 0;
+		passCount = 0;
+		this.board = board;
+
+		if (table == null) {
+			table = new BoundTable<M>(TABLE_BITS, evaluator.infty());
+		}
+		table.clear();
+		clearStopRequest();
+
+		timer.start(myTime, opTime);
+		timer.notOkToTimeup();
+
+		LinkedList<M> moves = generateOrderedMoves();
+
+		// Should never be called if we don't have any moves left
+		if (moves.isEmpty()) {
+			throw new IllegalStateException();
+		}
+
+		M bestMove = moves.getFirst();
+		int guess = 0;
+
+		for (int depth = 1; depth <= maxDepth; depth++) {
+
+			// We've hit the minimum depth, so timeup regularly
+			if (depth >= minDepth) {
+				timer.okToTimeup();
+			}
+
+			if (timeup()) {
+				break;
+			}
+
+			long iterationNodes = nodeCount;
+			int passes = passCount;
+			int value = mtdf(moves, depth, guess);
+
+			if (Config.debug) {
+				System.out.println("Depth " + depth + ": " +
+						NumberFormat.getNumberInstance(Locale.US).format(nodeCount - iterationNodes) +
+						" nodes, " + (passCount - passes) + " passes");
+			}
+
+			// Ran out of time part way through, so this depth doesn't count
+			if (value == -evaluator.infty()) {
+				break;
+			}
+
+			guess = value;
+			int index = table.find(board.signature());
+			if (index >= 0 && table.getMove(index) != null) {
+				bestMove = table.getMove(index);
+				reportNewBestMove(bestMove);
+
+				// Search the best move first next time
+				moves.remove(bestMove);
+				moves.addFirst(bestMove);
+			}
+		}
+
+		return bestMove;
+	}
+
+	/**
+	 * Sets how many plies of captures are searched past the search depth.
+	 * Defaults to 8. With 0, leaves are evaluated as they are, like a
+	 * plain alpha-beta search.
+	 * 
+	 * @param depth the quiescence search depth.
+	 */
+	public void setQuiescenceDepth(int depth) {
+		quiescenceDepth = depth;
+	}
+
+	/**
+	 * @return The number of null window passes made in the last search.
+	 */
+	public int passCount() {
+		return passCount;
+	}
+
+	// Converges on the value of the root by null window searches, starting from guess.
+	// Returns -infinity if we run out of time
+	private int mtdf(LinkedList<M> moves, int depth, int guess) {
+		int value = guess;
+		int lowerBound = -evaluator.infty();
+		int upperBound = evaluator.infty();
+
+		while (lowerBound < upperBound) {
+			int beta = (value == lowerBound) ? value + 1 : value;
+
+			ply = 0;
+			passCount++;
+			value = alphaBeta(moves, depth, beta - 1, beta);
+
+			if (timeup()) {
+				return -evaluator.infty();
+			}
+
+			// Failed low, so the value is at most this
+			if (value < beta) {
+				upperBound = value;
+			}
+
+			// Failed high, so the value is at least this
+			else {
+				lowerBound = value;
+			}
+		}
+		return value;
+	}
+
+	// Alpha-beta search with memory. moves is only given at the root, where
+	// the iterative deepening keeps them ordered, and is null everywhere else
+	private int alphaBeta(LinkedList<M> moves, int depth, int alpha, int beta) {
+		nodeCount++;
+
+		// Narrow the window with whatever the table knows about this position
+		int index = table.find(board.signature());
+		if (index >= 0 && table.getDepth(index) >= depth) {
+			int lowerBound = valueFromTable(table.getLowerBound(index));
+			int upperBound = valueFromTable(table.getUpperBound(index));
+
+			if (lowerBound >= beta) {
+				return lowerBound;
+			}
+			if (upperBound <= alpha) {
+				return upperBound;
+			}
+			alpha = Math.max(alpha, lowerBound);
+			beta = Math.min(beta, upperBound);
+		}
+
+		if (depth == 0) {
+			return quiescenceSearch(quiescenceDepth, alpha, beta);
+		}
+
+		if (moves == null) {
+			moves = generateOrderedMoves();
+
+			// No moves to make
+			if (moves.isEmpty()) {
+				return board.inCheck() ? matedScore() : -evaluator.stalemate();
+			}
+
+			// Try the hash move first
+			if (index >= 0 && table.getMove(index) != null && moves.remove(table.getMove(index))) {
+				moves.addFirst(table.getMove(index));
+			}
+		}
+
+		int bestValue = -evaluator.infty();
+		M bestMove = null;
+		int a = alpha;
+
+		for (M move : moves) {
+
+			// If we're out of time, get out of the loop and ignore these results
+			if (timeup()) {
+				return -evaluator.infty();
+			}
+
+			board.applyMove(move);
+			ply++;
+			int value = -alphaBeta(null, depth - 1, -beta, -a);
+			ply--;
+			board.undoMove();
+
+			if (value > bestValue) {
+				bestValue = value;
+				bestMove = move;
+			}
+
+			if (bestValue > a) {
+				a = bestValue;
+			}
+
+			// Alpha-beta pruning
+			if (bestValue >= beta) {
+				break;
+			}
+		}
+
+		table.store(board.signature(), depth, alpha, beta, valueToTable(bestValue), bestMove);
+		return bestValue;
+	}
+
+	// Quiescence Search - keeps looking at captures until the position is
+	// quiet, so we don't evaluate in the middle of an exchange
+	private int quiescenceSearch(int depth, int alpha, int beta) {
+		nodeCount++;
+		int standPat = evaluator.eval(board);
+
+		if (depth == 0 || standPat >= beta) {
+			return standPat;
+		}
+
+		int bestValue = standPat;
+		if (standPat > alpha) {
+			alpha = standPat;
+		}
+
+		for (M move : generateNonQuietMoves()) {
+
+			// If we're out of time, get out of the loop and ignore these results
+			if (timeup()) {
+				return -evaluator.infty();
+			}
+
+			board.applyMove(move);
+			ply++;
+			int value = -quiescenceSearch(depth - 1, -beta, -alpha);
+			ply--;
+			board.undoMove();
+
+			if (value > bestValue) {
+				bestValue = value;
+			}
+
+			if (bestValue > alpha) {
+				alpha = bestValue;
+			}
+
+			// Alpha-beta pruning
+			if (bestValue >= beta) {
+				break;
+			}
+		}
+		return bestValue;
+	}
+
+	// Out of time, or asked to stop
+	private boolean timeup() {
+		return stopRequested() || timer.timeup();
+	}
+
+	// Score for being mated at the current ply
+	private int matedScore() {
+		return -(evaluator.mate() + MAX_PLY - ply);
+	}
+
+	// Mate scores are stored as the distance from the stored node rather
+	// than from the root, so they're still right when probed at another ply
+	private int valueToTable(int value) {
+		if (value >= evaluator.mate()) {
+			return value + ply;
+		}
+		else if (value <= -evaluator.mate()) {
+			return value - ply;
+		}
+		return value;
+	}
+
+	// Converts a value stored in the table back to this ply. Unknown
+	// bounds are stored as infinity, and are left alone
+	private int valueFromTable(int value) {
+		if (Math.abs(value) == evaluator.infty()) {
+			return value;
+		}
+		else if (value >= evaluator.mate()) {
+			return value - ply;
+		}
+		else if (value <= -evaluator.mate()) {
+			return value + ply;
+		}
+		return value;
+	}
+
+	// Legal moves, with captures and promotions first
+	private LinkedList<M> generateOrderedMoves() {
+		List<M> psmoves = board.generatePseudoMoves();
+		LinkedList<M> moves = new LinkedList<M>();
+		Set<M> setmoves = new HashSet<M>(256);
+
+		for (M m : psmoves) {
+			if (setmoves.add(m) && board.isLegalPseudoMove(m)) {
+				if (m.isCapture() || m.isEnpassant() || m.isPromotion()) {
+					moves.addFirst(m);
+				}
+				else {
+					moves.add(m);
+				}
+			}
+		}
+		return moves;
+	}
+
+	// Legal captures and promotions
+	private LinkedList<M> generateNonQuietMoves() {
+		List<M> psmoves = board.generatePseudoMoves();
+		LinkedList<M> moves = new LinkedList<M>();
+		Set<M> setmoves = new HashSet<M>(256);
+
+		for (M m : psmoves) {
+			if (setmoves.add(m) && board.isLegalPseudoMove(m) &&
+					(m.isCapture() || m.isEnpassant() || m.isPromotion())) {
+				moves.add(m);
+			}
+		}
+		return moves;
+	}
+}
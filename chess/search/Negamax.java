@@ -3,14 +3,20 @@ package chess.search;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import chess.board.Board;
 import chess.board.Move;
@@ -18,19 +24,35 @@ import chess.book.Book;
 import chess.gui.Config;
 import chess.search.AbstractSearcher;
 import chess.search.BoardInfo;
-import chess.util.LRUMap;
 
 /**
  * A chess searcher that uses:
  * 
  * Negamax
  * Iterative Deepening 
- * Transposition Table
- * Quiescence Search
+ * Aspiration windows (window sized from the evaluator's pawn weight)
+ * Transposition Table (mate scores stored relative to the node)
+ * Mate distance pruning
+ * Quiescence Search (check evasions, optional quiet checks, delta and static exchange pruning)
  * Move ordering (captures and promotions first)
  * Killer heuristic (best two moves seen are stored and tried first)
  * Avoid repetitions (to avoid draws)
- * Check extension (searches one ply deeper when board is in check)
+ * Check extension (searches one ply deeper when board is in check, optionally budgeted)
+ * Singular extensions (optional, extends a hash move much better than the alternatives)
+ * Null move pruning (optional, with zugzwang safeguards and verification)
+ * Late move reductions (optional, quiet moves late in the ordering)
+ * Frontier pruning (optional, futility, reverse futility and late move pruning)
+ * ProbCut (optional, cuts when a shallow search of a good capture beats beta by a margin)
+ * Internal iterative deepening (optional, finds a move to try first without a hash move)
+ * Enhanced transposition cutoffs (optional, cut off on a stored bound for a child)
+ * Lazy SMP (optional, helper threads search the same root and share the transposition table)
+ * Search listeners (iterations, best moves with the principal variation from the table, statistics)
+ * Cooperative stop (polled with the timer, returns the last completed iteration's move)
+ * Search limits (clock, move time, depth, nodes, mate and root moves) and results with the PV
+ * Pondering (optional table reuse, a ponder hit hands a running search its clock)
+ * Multi-PV (optional, the root searches against the worst of the best few moves to score them all)
+ * Dynamic time management (with a TimeManager, iterations stop on a stable best move or if they can't finish)
+ * Strided clock polling (the stride follows the search speed, and an alarm thread forces a poll at deadlines)
  * 
  * TODO
  * Better evaluation function
@@ -46,18 +68,66 @@ import chess.util.LRUMap;
  */
 
 public class Negamax<M extends Move<M>, B extends Board<M,B>>
-extends AbstractSearcher<M,B> {
+extends AbstractSearcher<M,B> implements Cloneable {
+
+	// Mate scores are evaluator.mate() + MAX_PLY less the plies to the mate,
+	// so they stay beyond evaluator.mate() and below infinity
+	private final int MAX_PLY = 1000;
 
 	// How deep our quiescence search goes
 	private final int QUIESCENCE_MIN_DEPTH = 2;
 	private final int QUIESCENCE_MID_DEPTH = 5;
 	private final int QUIESCENCE_MAX_DEPTH = 100;
 
+	// Quiescence pruning skips captures that can't raise alpha even with this
+	// many pawns to spare, and captures that lose material in the exchange
+	private final int DELTA_MARGIN = 2;
+	private boolean quiescencePruning = false;
+
+	// Quiet moves that give check can be searched on the first quiescence ply
+	private boolean quiescenceChecks = false;
+
+	// Aspiration window is a fraction of a pawn around the previous iteration's
+	// score. It doubles each time the search falls outside of it
+	private final int ASPIRATION_WINDOW_DIVISOR = 2;
+
+	// Null move pruning reduces by 2 plies, or 3 plies on deeper searches.
+	// Cutoffs at or above the verify depth can be confirmed by a reduced search
+	private final int NULL_MOVE_MIN_DEPTH = 3;
+	private final int NULL_MOVE_DEEP_DEPTH = 7;
+	private final int NULL_MOVE_VERIFY_DEPTH = 6;
+	private boolean nullMovePruning = false;
+	private boolean nullMoveVerification = false;
+
+	// Late move reductions. The first few moves and anything tactical are never
+	// reduced, the rest are reduced by a table indexed by depth and move number
+	private final int LMR_MIN_DEPTH = 3;
+	private final int LMR_FULL_DEPTH_MOVES = 3;
+	private static final int[][] LMR_TABLE = new int[64][64];
+	static {
+		for (int depth = 1; depth < 64; depth++) {
+			for (int moveNumber = 1; moveNumber < 64; moveNumber++) {
+				LMR_TABLE[depth][moveNumber] = (int) (0.75 + Math.log(depth) * Math.log(moveNumber) / 2.25);
+			}
+		}
+	}
+	private boolean lateMoveReductions = false;
+
+	// Frontier pruning near the leaves. Margins are in pawns and get scaled by
+	// the evaluator's pawn weight. Late move pruning drops quiet moves after a
+	// move count that grows with depth. It's off at depth 1, since our quiet
+	// moves aren't ordered and the quiescence search there is cheap anyway
+	private final int FRONTIER_MAX_DEPTH = 3;
+	private final int[] FUTILITY_MARGINS = {0, 2, 3, 5};
+	private final int[] REVERSE_FUTILITY_MARGINS = {0, 1, 2, 3};
+	private final int[] LATE_MOVE_PRUNING_COUNTS = {0, 0, 12, 18};
+	private boolean frontierPruning = false;
+
 	// Create hash that contains previously processed nodes.
 	private final int TRANSPOSITION_INIT_ELEMS = 2 << 20;
 	private final int TRANSPOSITION_MAX_ELMS = TRANSPOSITION_INIT_ELEMS;
 	private final float TRANSPOSITION_LOAD_FACTOR = 0.75f;
-	private Map<Long, BoardInfo<M>> transpositionTable;
+	private TranspositionTable<M> transpositionTable;
 
 	// Store the information about repetitions
 	private BoardCount boardCount = new BoardCount();
@@ -65,63 +135,212 @@ extends AbstractSearcher<M,B> {
 	// The depth the iterative deepening is currently at
 	private int depthIteration = 0;
 
+	// Score of the last completed rootNegaMax() call
+	private int rootValue;
+
+	// ProbCut searches captures that win enough material this many plies shallower,
+	// against a beta raised by the margin (in pawns). Beating it predicts a cutoff
+	private final int PROBCUT_MIN_DEPTH = 5;
+	private final int PROBCUT_REDUCTION = 4;
+	private int probCutMargin = 1;
+	private boolean probCut = false;
+
+	// Without a hash move, deep nodes run a search this many plies
+	// shallower first, just to find a good move to try first
+	private final int IID_MIN_DEPTH = 5;
+	private final int IID_REDUCTION = 2;
+	private boolean internalIterativeDeepening = false;
+
+	// Extensions are counted in fractions of a ply. With the budget on, checks
+	// extend by a full ply until a path has used half of its budget, then by half
+	// a ply, and a path can't extend by more than half of the iteration's depth.
+	// Without it, every check extends by a full ply
+	private final int ONE_PLY = 4;
+	private boolean extensionBudget = false;
+
+	// A hash move is singular when a search of every other move at half
+	// the depth can't get within a fraction of a pawn of its stored value
+	private final int SINGULAR_MIN_DEPTH = 6;
+	private final int SINGULAR_MARGIN_DIVISOR = 2;
+	private boolean singularExtensions = false;
+
+	// Children are looked up in the transposition table for a cutoff
+	// before any of them are searched, at this depth and deeper
+	private final int ETC_MIN_DEPTH = 5;
+	private boolean enhancedTranspositionCutoffs = false;
+
+	// Lazy SMP - helper threads search the same root on their own copy of the
+	// board until the main thread is done. All of them share a lockless table.
+	// Half of the helpers search a ply deeper, so the threads spread over two depths
+	private final int SHARED_TABLE_BITS = 21;
+	private int threads = 1;
+	private SharedTranspositionTable<M> sharedTable;
+	private List<Negamax<M, B>> helpers;
+	private List<Thread> helperThreads;
+	private HelperTimer helperTimer;
+	private int helperIndex = 0;
+
+	// How often a ponder search that's out of depth looks for a hit
+	private final long PONDER_WAIT_NANOS = 1000000;
+
+	// The clock and deadline are only read every pollStride nodes. The stride
+	// is sized from the nodes per second since the last poll, so polls come
+	// about POLL_INTERVAL_NANOS apart. An alarm sets pollNow at the deadlines
+	// we know of, and once time is up, clockExpired keeps it up
+	private final long POLL_INTERVAL_NANOS = 1000000;
+	private final long MIN_POLL_STRIDE = 64;
+	private final long MAX_POLL_STRIDE = 1 << 16;
+	private long pollStride;
+	private long nextPoll;
+	private long lastPollNanos;
+	private long lastPollNodes;
+	private volatile boolean pollNow;
+	private boolean clockExpired;
+	private List<ScheduledFuture<?>> alarms = new ArrayList<ScheduledFuture<?>>();
+
+	private static final ScheduledExecutorService ALARMS = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Negamax alarms");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// Search listeners get statistics every time this many more nodes are searched
+	private final long STATISTICS_INTERVAL = 1 << 16;
+	private long nextStatistics;
+
+	// Distance from the root of the node being searched
+	private int ply;
+
 	private B board;
 	private Book<M, B> book = new Book<M, B>();
 
 	// Variables for performance analysis
 	private ThreadMXBean bean;
-	private long nodeCount, startTime, endTime;
+	private long startTime, endTime, quiescenceNodeCount;
 	private int originalMinDepth = -1;
 
+	// Limits of the search running now. clock is the timer, or null without a
+	// clock. timeManager is the clock too, if it decides about iterations.
+	// The deadline is in System.nanoTime(), and 0 means there's no limit
+	private Timer clock;
+	private TimeManager timeManager;
+	private long deadline;
+	private long nodeLimit;
+	private int depthLimit;
+	private List<M> searchMoves;
+
+	// Pondering - ponderHit() leaves the clock for the search thread to pick up
+	private volatile boolean ponderHitPending;
+	private volatile int ponderMyTime, ponderOpTime;
+	private boolean ponderHit;
+
+	// Keep the transposition table from one search to the next
+	private boolean tableReuse = false;
+
+	// Multi-PV - the root keeps the best few moves in order, and searches each
+	// move against the worst of them rather than the best, so they all get
+	// exact scores. lines are from the last iteration that finished
+	private int multiPv = 1;
+	private List<M> rootLineMoves;
+	private int[] rootLineValues;
+	private List<SearchResult<M>> lines;
+
 	public M getBestMove(B board, int myTime, int opTime) {
+		SearchLimits<M> limits = new SearchLimits<M>();
+		limits.setClock(myTime, opTime);
+		limits.setPlayed(true);
+		return search(board, limits).getBestMove();
+	}
+
+	// A search that's played tracks its position and move for repetitions,
+	// and may take its move from the book. A ponder search only knows whether
+	// it was played once it's over
+	public SearchResult<M> search(B board, SearchLimits<M> limits) {
+		boolean play = limits.isPlayed();
+		boolean ponder = limits.isPonder();
+		ponderHit = false;
 		nodeCount = 0;
+		quiescenceNodeCount = 0;
+		nextStatistics = STATISTICS_INTERVAL;
+		startPolling();
+		startSearchInfo();
+		if (!ponder) {
+			clearStopRequest();
+		}
 		bean = ManagementFactory.getThreadMXBean();
 		startTime = bean.getCurrentThreadCpuTime();
 
 		this.board = board;		
-		transpositionTable = new LRUMap<Long, BoardInfo<M>>(TRANSPOSITION_INIT_ELEMS,
-				TRANSPOSITION_MAX_ELMS,
-				TRANSPOSITION_LOAD_FACTOR);
+		if (threads > 1) {
+			if (sharedTable == null) {
+				sharedTable = new SharedTranspositionTable<M>(SHARED_TABLE_BITS);
+			}
+			if (!tableReuse || transpositionTable != sharedTable) {
+				sharedTable.clear();
+			}
+			transpositionTable = sharedTable;
+		}
+		else if (!tableReuse || transpositionTable == null || transpositionTable == sharedTable) {
+			transpositionTable = new LRUTranspositionTable<M>(TRANSPOSITION_INIT_ELEMS,
+					TRANSPOSITION_MAX_ELMS,
+					TRANSPOSITION_LOAD_FACTOR);
+		}
 
 		// Track current board to avoid repetitions
-		boardCount.increment(board);
+		if (play && !ponder) {
+			boardCount.increment(board);
+		}
+
+		// The hard limits. Mate in n moves needs at most 2n - 1 plies
+		deadline = limits.getMoveTime() > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(limits.getMoveTime()) : 0;
+		if (deadline != 0) {
+			scheduleAlarm(deadline);
+		}
+		nodeLimit = limits.getNodes();
+		depthLimit = limits.getDepth() > 0 ? limits.getDepth() : maxDepth;
+		if (limits.getMate() > 0) {
+			depthLimit = Math.min(depthLimit, 2 * limits.getMate() - 1);
+		}
+		searchMoves = limits.getSearchMoves();
+		multiPv = limits.getMultiPv();
+		lines = null;
 
 		// Start the time - logic that figures out how much time
 		// we should have, is in the timer object. Also make sure
 		// we don't timeup until we've processed the minDepth's needed
-		timer.start(myTime, opTime);
-		timer.notOkToTimeup();
-
-		// Force ourselves to finish quickly when almost out of time
-		if (timer.hurryUp()) {
-			if (originalMinDepth < 0) {
-				originalMinDepth = minDepth;
-			}
-			setMinDepth(Math.min(minDepth, 4));
-		}
-		else if (originalMinDepth > 0) {
-			setMinDepth(originalMinDepth);
+		clock = null;
+		timeManager = null;
+		if (limits.hasClock() && !ponder) {
+			startClock(limits.getMyTime(), limits.getOpTime());
+			timer.notOkToTimeup();
 		}
 
 		// Check our book for a good move
-		M bookMove = book.getMove(board);
+		M bookMove = (play && !ponder && searchMoves == null) ? book.getMove(board) : null;
 		if (bookMove != null) {
 
 			// Make sure it isn't a repetition
 			board.applyMove(bookMove);		
 			if (!boardCount.isRepetition(board)) {
 				reportNewBestMove(bookMove);
+				searchInfo.setBestMove(bookMove);
+				searchInfo.setScore(0);
+				searchInfo.clearPv();
+				searchInfo.addPvMove(bookMove);
+				fireBestMoveChanged();
 
 				// Track the result so we don't repeat it
 				boardCount.increment(board);
 				board.undoMove();	
-				return bookMove;
+				cancelAlarms();
+				return searchResult(bookMove, 0);
 			}
 			board.undoMove();
 		}				
 
-		LinkedList<M> moves = generateOrderedMoves();
-		Collections.sort(moves, moveComparator);
+		LinkedList<M> moves = generateRootMoves();
 
 		// Should never be called if we don't have any moves left
 		if (moves.isEmpty()) {
@@ -131,35 +350,117 @@ extends AbstractSearcher<M,B> {
 		int infinity = evaluator.infty();
 		M bestMove = moves.getFirst();
 		boolean timeout = false;
+		int previousValue = 0;
+		int previousLineValue = -infinity;
+		int completedDepth = 0;
+		startHelpers();
 
 		// To do Iterative deepening, we have to repeat our alpha-beta search
 		// from n = 1 ... depth. We keep track of the move ordering
 		// so each future depth starts with the best possible moves	
-		for(depthIteration = 1; depthIteration <= maxDepth; depthIteration++) {
+		for(depthIteration = 1; depthIteration <= depthLimit; depthIteration++) {
 
 			// We've hit the minimum depth, so timeup regularly
-			if(depthIteration >= minDepth) {
-				timer.okToTimeup();
+			if(depthIteration >= minDepth && clock != null) {
+				clock.okToTimeup();
 			}
 
-			if(timer.timeup()) {
+			pollNow = true;
+			if(timeup() || (timeManager != null && !timeManager.nextIteration())) {
 				break;
 			}
+			fireIterationStarted(depthIteration);
+
+			long iterationNodes = nodeCount;
+			int researches = 0;
+
+			// Center the window on the previous score. The first iteration
+			// has nothing to center on, so it searches the full window
+			int window = evaluator.weightOfPawn() / ASPIRATION_WINDOW_DIVISOR;
+			int alpha = -infinity;
+			int beta = infinity;
+			if (depthIteration > 1 && window > 0 && multiPv == 1) {
+				alpha = Math.max(previousValue - window, -infinity);
+				beta = Math.min(previousValue + window, infinity);
+			}
+
+			// With multi-PV, the window runs from below the worst line to above the best
+			else if (depthIteration > 1 && window > 0 && previousLineValue > -infinity) {
+				alpha = Math.max(previousLineValue - window, -infinity);
+				beta = Math.min(previousValue + window, infinity);
+			}
 
 			// We may return from this call before we searched full depth, so verify result					    
-			M unverifiedBestMove = rootNegaMax(moves, depthIteration, -infinity, infinity);
+			M unverifiedBestMove = rootNegaMax(moves, depthIteration, alpha, beta);
+
+			// Fail low or fail high, so widen that side of the window and search again.
+			// Multi-PV fails low when fewer lines than it wanted beat alpha, and
+			// fails high like a single line, on its best move
+			while (unverifiedBestMove != null && ((multiPv > 1 && rootLineMoves.size() < multiPv && alpha > -infinity) ||
+					(multiPv == 1 && rootValue <= alpha && alpha > -infinity) || (rootValue >= beta && beta < infinity))) {
+				window *= 2;
+				if (multiPv == 1 && rootValue <= alpha && timeManager != null) {
+					timeManager.failLow();
+				}
+				if (rootValue < beta) {
+					alpha = Math.max(alpha - window, -infinity);
+				}
+				else {
+					beta = Math.min(rootValue + window, infinity);
+				}
+				researches++;
+				unverifiedBestMove = rootNegaMax(moves, depthIteration, alpha, beta);
+			}
+
+			if (Config.debug) {
+				System.out.println("Depth " + depthIteration + ": " +
+						NumberFormat.getNumberInstance(Locale.US).format(nodeCount - iterationNodes) +
+						" nodes, " + researches + " re-searches");
+			}
+
 			if (unverifiedBestMove != null) {
+				// The first iteration has nothing to compare with
+				if (timeManager != null) {
+					int scoreDrop = completedDepth == 0 ? 0 :
+							(previousValue - rootValue) * 100 / Math.max(evaluator.weightOfPawn(), 1);
+					timeManager.iterationFinished(completedDepth > 0 && !unverifiedBestMove.equals(bestMove), scoreDrop);
+				}
 				bestMove = unverifiedBestMove;
+				previousValue = rootValue;
+				if (multiPv > 1) {
+					previousLineValue = rootLineMoves.size() < multiPv ? -infinity : rootLineValues[multiPv - 1];
+				}
+				completedDepth = depthIteration;
 				reportNewBestMove(bestMove);
+				if (multiPv > 1) {
+					reportLines(moves);
+				}
+				else {
+					reportSearchInfo(bestMove, rootValue, 1);
+					fireIterationFinished();
+				}
 
 				// Add the best move to the start of the list
 				moves.remove(bestMove);
 				moves.addFirst(bestMove);			
+
+				// A mate this close was searched fully, so deeper searches can't change it
+				if (Math.abs(rootValue) >= evaluator.mate() && mateDistance(rootValue) <= depthIteration) {
+					break;
+				}
 			}
 			else {
 				timeout = true;
 			}
 		}	
+		stopHelpers();
+
+		// A ponder search that ran out of depth waits to be hit or stopped
+		while (ponder && !ponderHit && !timeup()) {
+			LockSupport.parkNanos(this, PONDER_WAIT_NANOS);
+		}
+		ponderHitPending = false;
+		cancelAlarms();
 
 		if (Config.debug) {
 			
@@ -172,21 +473,226 @@ extends AbstractSearcher<M,B> {
 			System.out.println("Depth: " + depthSearchedTo);	
 			double nodesPerSecond = nodeCount / elapsedTime;
 			System.out.println("Nodes searched: " + NumberFormat.getNumberInstance(Locale.US).format(nodeCount));
+			System.out.println("Quiescence nodes: " + NumberFormat.getNumberInstance(Locale.US).format(quiescenceNodeCount) +
+					" (" + (nodeCount == 0 ? 0 : 100 * quiescenceNodeCount / nodeCount) + "%)");
 			System.out.println("Nodes/s: " + NumberFormat.getNumberInstance(Locale.US).format((int) nodesPerSecond));		
 			System.out.println("Entries in transposition table: " + NumberFormat.getNumberInstance(Locale.US).format(transpositionTable.size()));
 			System.out.println("*******************************************************");
 		}
 		
-		// Track the result so we don't repeat it
-		board.applyMove(bestMove);
-		boardCount.increment(board);
-		board.undoMove();
-		return bestMove;
+		// Track the result so we don't repeat it. A hit ponder search
+		// hasn't tracked the position it started from yet
+		if (play && ponder && ponderHit) {
+			boardCount.increment(board);
+		}
+		if (play && (!ponder || ponderHit)) {
+			board.applyMove(bestMove);
+			boardCount.increment(board);
+			board.undoMove();
+		}
+		if (lines != null) {
+			SearchResult<M> best = lines.get(0);
+			return new SearchResult<M>(bestMove.copy(), best.getScore(), completedDepth, best.getPv(),
+					nodeCount, elapsedMillis(), lines);
+		}
+		return searchResult(bestMove, completedDepth);
+	}
+
+	// The result, with the score and principal variation in the search info. The
+	// moves are copied, since the search goes on changing the pieces of its own
+	private SearchResult<M> searchResult(M bestMove, int depth) {
+		List<M> pv = new ArrayList<M>(searchInfo.getPvLength());
+		for (int i = 0; i < searchInfo.getPvLength(); i++) {
+			pv.add(searchInfo.getPvMove(i).copy());
+		}
+		return new SearchResult<M>(bestMove.copy(), searchInfo.getScore(), depth, pv, nodeCount, elapsedMillis());
+	}
+
+	// Multi-PV - reports each line the root kept, best first, and orders
+	// the moves by them for the next iteration
+	private void reportLines(LinkedList<M> moves) {
+		lines = new ArrayList<SearchResult<M>>(rootLineMoves.size());
+		for (int i = 0; i < rootLineMoves.size(); i++) {
+			reportSearchInfo(rootLineMoves.get(i), rootLineValues[i], i + 1);
+			lines.add(searchResult(rootLineMoves.get(i), depthIteration));
+		}
+		for (int i = rootLineMoves.size() - 1; i > 0; i--) {
+			moves.remove(rootLineMoves.get(i));
+			moves.addFirst(rootLineMoves.get(i));
+		}
+		fireIterationFinished();
+	}
+
+	/**
+	 * Turns null move pruning on or off. Off by default.
+	 * 
+	 * @param enabled true to prune with null moves.
+	 */
+	public void setNullMovePruning(boolean enabled) {
+		nullMovePruning = enabled;
+	}
+
+	/**
+	 * Turns verification of deep null move cutoffs on or off. Costs
+	 * some nodes but guards against zugzwang positions with pieces left.
+	 * 
+	 * @param enabled true to verify null move cutoffs.
+	 */
+	public void setNullMoveVerification(boolean enabled) {
+		nullMoveVerification = enabled;
+	}
+
+	/**
+	 * Turns late move reductions on or off. Off by default.
+	 * 
+	 * @param enabled true to reduce late quiet moves.
+	 */
+	public void setLateMoveReductions(boolean enabled) {
+		lateMoveReductions = enabled;
+	}
+
+	/**
+	 * Turns futility, reverse futility and late move pruning at
+	 * depths 1 to 3 on or off. Off by default.
+	 * 
+	 * @param enabled true to prune at frontier nodes.
+	 */
+	public void setFrontierPruning(boolean enabled) {
+		frontierPruning = enabled;
+	}
+
+	/**
+	 * Turns ProbCut on or off. Off by default.
+	 * 
+	 * @param enabled true to predict cutoffs with shallow searches of captures.
+	 */
+	public void setProbCut(boolean enabled) {
+		probCut = enabled;
+	}
+
+	/**
+	 * Sets how far above beta a shallow ProbCut search has to be
+	 * to cut off, in pawns. Defaults to 1.
+	 * 
+	 * @param pawns the margin above beta.
+	 */
+	public void setProbCutMargin(int pawns) {
+		probCutMargin = pawns;
+	}
+
+	/**
+	 * Turns internal iterative deepening on or off. Off by default.
+	 * 
+	 * @param enabled true to search shallower first when there's no hash move.
+	 */
+	public void setInternalIterativeDeepening(boolean enabled) {
+		internalIterativeDeepening = enabled;
+	}
+
+	/**
+	 * Turns the extension budget on or off. Off by default,
+	 * so every check extends the search by a full ply.
+	 * 
+	 * @param enabled true to limit how much each path can be extended.
+	 */
+	public void setExtensionBudget(boolean enabled) {
+		extensionBudget = enabled;
+	}
+
+	/**
+	 * Turns singular extensions on or off. Off by default.
+	 * 
+	 * @param enabled true to extend hash moves much better than the alternatives.
+	 */
+	public void setSingularExtensions(boolean enabled) {
+		singularExtensions = enabled;
+	}
+
+	/**
+	 * Turns enhanced transposition cutoffs on or off. Off by default.
+	 * 
+	 * @param enabled true to look for cutoffs in the table entries of children.
+	 */
+	public void setEnhancedTranspositionCutoffs(boolean enabled) {
+		enhancedTranspositionCutoffs = enabled;
+	}
+
+	/**
+	 * Turns delta pruning and pruning of losing captures in the
+	 * quiescence search on or off. Off by default.
+	 * 
+	 * @param enabled true to prune the quiescence search.
+	 */
+	public void setQuiescencePruning(boolean enabled) {
+		quiescencePruning = enabled;
+	}
+
+	/**
+	 * Turns searching quiet checking moves on the first ply of the
+	 * quiescence search on or off. Off by default.
+	 * 
+	 * @param enabled true to search quiet checks in the quiescence search.
+	 */
+	public void setQuiescenceChecks(boolean enabled) {
+		quiescenceChecks = enabled;
+	}
+
+	/**
+	 * Sets how many threads search at once. Threads after the first are
+	 * helpers that fill the shared transposition table. Defaults to 1.
+	 * 
+	 * @param threads the number of search threads.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(threads, 1);
+	}
+
+	/**
+	 * Keeps the transposition table from one search to the next, so a
+	 * search starts with what the last one found. Off by default.
+	 * 
+	 * @param enabled true to reuse the table.
+	 */
+	public void setTableReuse(boolean enabled) {
+		tableReuse = enabled;
+	}
+
+	/**
+	 * Tells a ponder search running on another thread that the move it
+	 * expected was played. It carries on, now against this clock, and
+	 * keeps everything it's found so far.
+	 * 
+	 * @param myTime the remaining time on your clock.
+	 * @param opTime the remaining time on your opponent's clock.
+	 */
+	public void ponderHit(int myTime, int opTime) {
+		ponderMyTime = myTime;
+		ponderOpTime = opTime;
+		ponderHitPending = true;
+	}
+
+	/**
+	 * Forgets a stop left over from the last search. A ponder search doesn't
+	 * do this itself, so that a stop that comes before it gets going still
+	 * ends it. Call this before starting one on another thread.
+	 */
+	public void clearStop() {
+		clearStopRequest();
+	}
+
+	/**
+	 * @return The number of nodes in the last search that were
+	 * visited by the quiescence search. Included in nodeCount().
+	 */
+	public long quiescenceNodeCount() {
+		return quiescenceNodeCount;
 	}
 
 	// negamax() at the root level, allowing us to keep track of the best move
 	private M rootNegaMax(LinkedList<M> moves, int depth, int alpha, int beta) {
 		nodeCount++;
+		ply = 0;
+		int originalAlpha = alpha;
 
 		// Extend search when we find a player in check
 		if(board.inCheck()) {
@@ -195,29 +701,37 @@ extends AbstractSearcher<M,B> {
 
 		BoardInfo<M> boardInfo = transpositionTable.get(board.signature());
 
-		// See if we have a cache hit
+		// See if we have a cache hit. An exact score or lower bound is only
+		// for the entry's move, so it's no use when that move isn't searched,
+		// or for the lines after the best one. An upper bound holds for all
 		if((boardInfo != null) && (boardInfo.getDepth() >= depth)) {
+			int tableValue = valueFromTable(boardInfo);
+			boolean tableMove = multiPv == 1 && moves.contains(boardInfo.getBestMove());
 
 			// We can just return, because our guess is as good or better in the hash
-			if(boardInfo.getType() == BoardInfo.EXACT) {
-				return boardInfo.getBestMove();
+			if(boardInfo.getType() == BoardInfo.EXACT && tableMove) {
+				rootValue = tableValue;
+				return moves.get(moves.indexOf(boardInfo.getBestMove()));
 			}
 
 			// Hash has a better lower bound, so set our current lower bound
-			else if(boardInfo.getType() == BoardInfo.LOWER &&
-					boardInfo.getValue() > alpha) {
-				alpha = boardInfo.getValue();
+			else if(boardInfo.getType() == BoardInfo.LOWER && tableMove &&
+					tableValue > alpha) {
+				alpha = tableValue;
 			}
 
-			// Hash has a better upper bound, so set our current upper bound
+			// Hash has a better upper bound, so set our current upper bound. One at
+			// or below alpha would leave nothing to search, and nothing to return
+			// when the table move isn't ours, so that one is skipped
 			else if(boardInfo.getType() == BoardInfo.UPPER &&
-					boardInfo.getValue() < beta) {
-				beta = boardInfo.getValue();
+					tableValue < beta && tableValue > alpha) {
+				beta = tableValue;
 			}
 
 			// If lower bound surpasses upper bound, return value (alpha/beta pruning)
-			if(alpha >= beta) {
-				return boardInfo.getBestMove();
+			if(alpha >= beta && tableMove) {
+				rootValue = tableValue;
+				return moves.get(moves.indexOf(boardInfo.getBestMove()));
 			}
 		}
 
@@ -229,18 +743,50 @@ extends AbstractSearcher<M,B> {
 		M bestMove = moves.getFirst();
 		int value;
 
+		// Multi-PV lines, best first
+		List<M> lineMoves = null;
+		int[] lineValues = null;
+		if (multiPv > 1) {
+			lineMoves = new ArrayList<M>(multiPv + 1);
+			lineValues = new int[multiPv + 1];
+		}
+
 		for (M move : moves) {
 
 			// If we're out of time, get out of the loop and return failed value
-			if(timer.timeup()) {
+			if(timeup()) {
 				return null;
 			}
 
-			// Compute the new best Value
+			// Until there are enough lines, every move gets an exact score
+			int moveAlpha = alpha;
+			if (lineMoves != null) {
+				moveAlpha = originalAlpha;
+				if (lineMoves.size() == multiPv) {
+					moveAlpha = Math.max(originalAlpha, lineValues[multiPv - 1]);
+				}
+			}
+
+			// Compute the new best Value. Once the lines are full, a null window
+			// search first shows whether the move beats the worst of them
 			board.applyMove(move);
-			value = -negamax(depth-1, -beta, -alpha);
+			ply++;
+			if (lineMoves != null && lineMoves.size() == multiPv) {
+				value = -negamax(depth-1, -moveAlpha-1, -moveAlpha, true, 0);
+				if (value > moveAlpha) {
+					value = -negamax(depth-1, -beta, -moveAlpha, true, 0);
+				}
+			}
+			else {
+				value = -negamax(depth-1, -beta, -moveAlpha, true, 0);
+			}
+			ply--;
 			board.undoMove();
 
+			if (lineMoves != null && value > moveAlpha) {
+				addLine(lineMoves, lineValues, move, value);
+			}
+
 			// We found a new max, also keep track of move
 			if(value > bestValue) {
 				bestValue = value;
@@ -258,44 +804,201 @@ extends AbstractSearcher<M,B> {
 			}
 		}
 
-		updateTranspositionTable(alpha, beta, depth, bestValue, bestMove);
+		// The last move may have been cut short, and given a made up value
+		if (cutShort()) {
+			return null;
+		}
+
+		// Only some of the moves were searched, so the score isn't the position's
+		if (searchMoves == null) {
+			updateTranspositionTable(originalAlpha, beta, depth, bestValue, bestMove);
+		}
+		rootValue = bestValue;
+		rootLineMoves = lineMoves;
+		rootLineValues = lineValues;
 		return bestMove;
 	}
 
-	// Negamax with transposition tables and move ordering
-	private int negamax(int depth, int alpha, int beta) {
+	// Starts the timer as the clock for this search
+	private void startClock(int myTime, int opTime) {
+		clock = timer;
+		timeManager = (timer instanceof TimeManager) ? (TimeManager) timer : null;
+		timer.start(myTime, opTime);
+		if (timeManager != null) {
+			scheduleAlarm(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeManager.hardLimit()));
+		}
+
+		// Force ourselves to finish quickly when almost out of time
+		if (timer.hurryUp()) {
+			if (originalMinDepth < 0) {
+				originalMinDepth = minDepth;
+			}
+			setMinDepth(Math.min(minDepth, 4));
+		}
+		else if (originalMinDepth > 0) {
+			setMinDepth(originalMinDepth);
+		}
+	}
+
+	// On the search thread - the ponder search gets its clock, counting from
+	// now. It can time up straight away if it's past the minimum depth
+	private void acceptPonderHit() {
+		ponderHitPending = false;
+		ponderHit = true;
+		startClock(ponderMyTime, ponderOpTime);
+		if (depthIteration < minDepth) {
+			timer.notOkToTimeup();
+		}
+		else {
+			timer.okToTimeup();
+		}
+	}
+
+	// Out of time, over a hard limit, or asked to stop. Only the clock
+	// waits for the minimum depth. The clock and deadline are only polled
+	// every so often, the rest is cheap enough to check every time
+	private boolean timeup() {
+		if (ponderHitPending) {
+			acceptPonderHit();
+		}
+		if (stopRequested() || (nodeLimit != 0 && nodeCount >= nodeLimit)) {
+			return true;
+		}
+		if (!clockExpired && (pollNow || nodeCount >= nextPoll)) {
+			clockExpired = pollClock();
+		}
+		return clockExpired;
+	}
+
+	// Whether timeup() has ended the search, without polling the clock again,
+	// so a search that finished in time isn't thrown away
+	private boolean cutShort() {
+		return clockExpired || stopRequested() || (nodeLimit != 0 && nodeCount >= nodeLimit);
+	}
+
+	private void startPolling() {
+		pollStride = MIN_POLL_STRIDE;
+		nextPoll = pollStride;
+		lastPollNanos = System.nanoTime();
+		lastPollNodes = 0;
+		pollNow = false;
+		clockExpired = false;
+	}
+
+	// Reads the clock, and sizes the stride from the speed since the last poll
+	private boolean pollClock() {
+		pollNow = false;
+		long now = System.nanoTime();
+		long nodes = nodeCount - lastPollNodes;
+		long nanos = now - lastPollNanos;
+		if (nodes > 0 && nanos > 0) {
+			pollStride = Math.max(MIN_POLL_STRIDE, Math.min(nodes * POLL_INTERVAL_NANOS / nanos, MAX_POLL_STRIDE));
+		}
+		lastPollNanos = now;
+		lastPollNodes = nodeCount;
+		nextPoll = nodeCount + pollStride;
+
+		return (clock != null && clock.timeup()) || (deadline != 0 && now - deadline >= 0);
+	}
+
+	// Forces a poll at this System.nanoTime(), however far off the next one is
+	private void scheduleAlarm(long nanoTime) {
+		alarms.add(ALARMS.schedule(new Runnable() {
+			public void run() {
+				pollNow = true;
+			}
+		}, nanoTime - System.nanoTime(), TimeUnit.NANOSECONDS));
+	}
+
+	private void cancelAlarms() {
+		for (ScheduledFuture<?> alarm : alarms) {
+			alarm.cancel(false);
+		}
+		alarms.clear();
+	}
+
+	// Puts a move into its place among the lines, dropping the worst line
+	// if there are too many
+	private void addLine(List<M> lineMoves, int[] lineValues, M move, int value) {
+		int index = lineMoves.size();
+		while (index > 0 && value > lineValues[index - 1]) {
+			lineValues[index] = lineValues[index - 1];
+			index--;
+		}
+		lineValues[index] = value;
+		lineMoves.add(index, move);
+		if (lineMoves.size() > multiPv) {
+			lineMoves.remove(multiPv);
+		}
+	}
+
+	// Negamax with transposition tables and move ordering. allowNullMove is false
+	// directly after a null move, so we never pass twice in a row. extension is
+	// how far the path to this node has been extended, in fractions of a ply
+	private int negamax(int depth, int alpha, int beta, boolean allowNullMove, int extension) {
 		nodeCount++;
 
+		// Helpers share our listeners, so only the main thread reports
+		if (nodeCount >= nextStatistics && helperIndex == 0) {
+			nextStatistics += STATISTICS_INTERVAL;
+			fireStatistics();
+		}
+
+		// Mate distance pruning - even mating right here can't beat a shorter
+		// mate found elsewhere, and being mated here can't be worse than alpha
+		alpha = Math.max(alpha, matedScore());
+		beta = Math.min(beta, -matedScore() - 1);
+		if (alpha >= beta) {
+			return alpha;
+		}
+
+		int originalAlpha = alpha;
+		boolean inCheck = board.inCheck();
+
+		// What this node was called with, for searching it again shallower
+		int unextendedDepth = depth;
+		int unextendedExtension = extension;
+
 		// Extend search when we find a player in check
-		if(board.inCheck()) {
-			depth++;
+		if(inCheck) {
+			if (!extensionBudget) {
+				depth++;
+			}
+			else {
+				int checkExtension = (2 * extension < maxExtension()) ? ONE_PLY : ONE_PLY / 2;
+				if (extension + checkExtension <= maxExtension()) {
+					depth += (extension + checkExtension) / ONE_PLY - extension / ONE_PLY;
+					extension += checkExtension;
+				}
+			}
 		}
 
 		// See if we have a cache hit
 		BoardInfo<M> boardInfo = transpositionTable.get(board.signature());
 
 		if((boardInfo != null) && (boardInfo.getDepth() >= depth)) {
+			int tableValue = valueFromTable(boardInfo);
 
 			// We can just return, because our guess is as good or better in the hash
 			if(boardInfo.getType() == BoardInfo.EXACT) {
-				return boardInfo.getValue();
+				return tableValue;
 			}
 
 			// Hash has a better lower bound, so set our current lower bound
 			else if(boardInfo.getType() == BoardInfo.LOWER &&
-					boardInfo.getValue() > alpha) {
-				alpha = boardInfo.getValue();
+					tableValue > alpha) {
+				alpha = tableValue;
 			}
 
 			// Hash has a better upper bound, so set our current upper bound
 			else if(boardInfo.getType() == BoardInfo.UPPER &&
-					boardInfo.getValue() < beta) {
-				beta = boardInfo.getValue();
+					tableValue < beta) {
+				beta = tableValue;
 			}
 
 			// If lower bound surpasses upper bound, return value (alpha/beta pruning)
 			if(alpha >= beta) {
-				return boardInfo.getValue();
+				return tableValue;
 			}
 		}
 
@@ -310,12 +1013,95 @@ extends AbstractSearcher<M,B> {
 			// Search more until we hit a quiet position. Limit search on this
 			// so we don't time out on a super long leaf chain		
 			if (depthIteration < minDepth) {
-				return quiescenceSearch(QUIESCENCE_MIN_DEPTH, alpha, beta);				
+				return quiescenceSearch(QUIESCENCE_MIN_DEPTH, alpha, beta, quiescenceChecks);				
 			}
 			else if (depthIteration == minDepth) {
-				return quiescenceSearch(QUIESCENCE_MID_DEPTH, alpha, beta);							
+				return quiescenceSearch(QUIESCENCE_MID_DEPTH, alpha, beta, quiescenceChecks);							
+			}
+			return quiescenceSearch(QUIESCENCE_MAX_DEPTH, alpha, beta, quiescenceChecks);
+		}
+
+		// Frontier pruning only makes sense out of check and away from mate scores
+		boolean frontier = frontierPruning && depth <= FRONTIER_MAX_DEPTH && !inCheck &&
+				Math.abs(alpha) < evaluator.mate() && Math.abs(beta) < evaluator.mate();
+		boolean tryNullMove = nullMovePruning && allowNullMove && depth >= NULL_MOVE_MIN_DEPTH && !inCheck &&
+				beta < evaluator.mate() && !board.onlyPawnsLeft();
+		boolean tryProbCut = probCut && depth >= PROBCUT_MIN_DEPTH && !inCheck &&
+				Math.abs(beta) < evaluator.mate() - probCutMargin * evaluator.weightOfPawn();
+		int staticEval = (frontier || tryNullMove || tryProbCut) ? evaluator.eval(board) : 0;
+
+		// Reverse futility pruning - we're so far above beta that
+		// a quiet move from the opponent won't bring them back
+		if (frontier) {
+			int margin = REVERSE_FUTILITY_MARGINS[depth] * evaluator.weightOfPawn();
+			if (staticEval - margin >= beta) {
+				return staticEval - margin;
+			}
+		}
+
+		// Null move pruning - if we pass and the opponent still can't get below beta, a real
+		// move would almost surely fail high too. Passing is illegal in check, and is unsafe
+		// in pawn endgames where zugzwang is common
+		if (tryNullMove && staticEval >= beta) {
+			int reduction = (depth >= NULL_MOVE_DEEP_DEPTH) ? 3 : 2;
+
+			board.applyNullMove();
+			ply++;
+			int value = -negamax(depth - 1 - reduction, -beta, -beta + 1, false, extension);
+			ply--;
+			board.undoNullMove();
+
+			if (value >= beta) {
+
+				// Confirm deep cutoffs by searching our own moves at reduced depth
+				if (nullMoveVerification && depth >= NULL_MOVE_VERIFY_DEPTH) {
+					value = negamax(depth - reduction, beta - 1, beta, false, extension);
+				}
+
+				// Mate scores found after a pass can't be trusted
+				if (value >= beta) {
+					return (value >= evaluator.mate()) ? beta : value;
+				}
 			}
-			return quiescenceSearch(QUIESCENCE_MAX_DEPTH, alpha, beta);
+		}
+
+		// ProbCut - a capture that beats beta by a margin in a quiescence search and
+		// a much shallower search would almost surely beat beta at full depth too
+		if (tryProbCut) {
+			int probBeta = beta + probCutMargin * evaluator.weightOfPawn();
+
+			for (M move : generateNonQuietMoves()) {
+
+				// Only captures that win enough in the exchange to make up the difference
+				if (!move.isCapture() ||
+						staticEval + board.staticExchange(move) * evaluator.weightOfPawn() / 100 < probBeta) {
+					continue;
+				}
+
+				board.applyMove(move);
+				ply++;
+				int value = -quiescenceSearch(QUIESCENCE_MIN_DEPTH, -probBeta, -probBeta + 1, false);
+				if (value >= probBeta) {
+					value = -negamax(depth - 1 - PROBCUT_REDUCTION, -probBeta, -probBeta + 1, true, extension);
+				}
+				ply--;
+				board.undoMove();
+
+				if (value >= probBeta) {
+					return value;
+				}
+			}
+		}
+
+		// Internal iterative deepening - the table has no move for us to try first,
+		// so a shallower search of this node puts one there. It starts from the
+		// depth we were called with, since it extends a check itself, and this
+		// node has already been counted
+		if (internalIterativeDeepening && unextendedDepth >= IID_MIN_DEPTH &&
+				(boardInfo == null || boardInfo.getBestMove() == null)) {
+			negamax(unextendedDepth - IID_REDUCTION, alpha, beta, allowNullMove, unextendedExtension);
+			nodeCount--;
+			boardInfo = transpositionTable.get(board.signature());
 		}
 
 		// Get the moves we can make
@@ -323,8 +1109,8 @@ extends AbstractSearcher<M,B> {
 
 		// No moves to make
 		if (moves.isEmpty()) {
-			if (board.inCheck()) {
-				return -evaluator.mate() - depth;
+			if (inCheck) {
+				return matedScore();
 			}
 			else {
 				return -evaluator.stalemate();
@@ -332,9 +1118,31 @@ extends AbstractSearcher<M,B> {
 		}			
 		else {
 
+			// Enhanced transposition cutoffs - a child whose stored bound
+			// already refutes this node saves searching any of them
+			if (enhancedTranspositionCutoffs && depth >= ETC_MIN_DEPTH) {
+				int cutoff = transpositionCutoff(moves, depth, beta);
+				if (cutoff >= beta) {
+					return cutoff;
+				}
+			}
+
 			// Add killer moves to front of list
 			orderMoves(moves, boardInfo);
 
+			// Singular extension - when no other move comes close to the hash move's
+			// stored value, the hash move is the only good one, so look at it deeper
+			M singularMove = null;
+			if (singularExtensions && depth >= SINGULAR_MIN_DEPTH && boardInfo != null &&
+					boardInfo.getType() != BoardInfo.UPPER && boardInfo.getDepth() >= depth - 3 &&
+					Math.abs(boardInfo.getValue()) < evaluator.mate() && moves.contains(boardInfo.getBestMove()) &&
+					extension + ONE_PLY <= maxExtension()) {
+				int singularBeta = valueFromTable(boardInfo) - evaluator.weightOfPawn() / SINGULAR_MARGIN_DIVISOR;
+				if (excludedSearch(moves, boardInfo.getBestMove(), depth / 2, singularBeta, extension) < singularBeta) {
+					singularMove = boardInfo.getBestMove();
+				}
+			}
+
 			// Best thing we've seen so far is -infinity
 			int bestValue = -evaluator.infty();
 			int value;
@@ -342,18 +1150,56 @@ extends AbstractSearcher<M,B> {
 			// We know it's not empty so get the first move to start
 			M bestMove = moves.getFirst();
 			value = -evaluator.infty();
+			int movesSearched = 0;
 
 			for (M move : moves) {
 
 				// If we're out of time, get out of the loop and ignore these results
-				if(timer.timeup()) {
+				if(timeup()) {
 					return -evaluator.infty();
 				}
 
+				// Only quiet moves that don't give check are pruned or reduced. Hash
+				// and killer moves, and the first move searched, are always searched
+				boolean reduce = lateMoveReductions && depth >= LMR_MIN_DEPTH && movesSearched >= LMR_FULL_DEPTH_MOVES;
+				boolean quiet = (frontier || reduce) && !inCheck && movesSearched > 0 &&
+						isQuiet(move) && !isHashMove(move, boardInfo);
+
 				// Compute the new best Value
 				board.applyMove(move);
-				value = -negamax(depth-1, -beta, -alpha);
+				ply++;
+				quiet = quiet && !board.inCheck();
+
+				// Futility and late move pruning - skip quiet moves that can't bring us back
+				// up to alpha, and quiet moves that are too far down the ordering
+				if (quiet && frontier &&
+						(staticEval + FUTILITY_MARGINS[depth] * evaluator.weightOfPawn() <= alpha ||
+						(LATE_MOVE_PRUNING_COUNTS[depth] > 0 && movesSearched >= LATE_MOVE_PRUNING_COUNTS[depth]))) {
+					ply--;
+					board.undoMove();
+					continue;
+				}
+
+				// Late move reduction - a quiet move this far down the ordering rarely
+				// beats alpha, so look at it shallower first
+				if (quiet && reduce) {
+					int reduction = Math.min(LMR_TABLE[Math.min(depth, 63)][Math.min(movesSearched, 63)], depth - 2);
+					value = -negamax(depth - 1 - reduction, -alpha - 1, -alpha, true, extension);
+
+					// It beat alpha after all, so it needs a real search
+					if (value > alpha) {
+						value = -negamax(depth-1, -beta, -alpha, true, extension);
+					}
+				}
+				else if (move.equals(singularMove)) {
+					value = -negamax(depth, -beta, -alpha, true, extension + ONE_PLY);
+				}
+				else {
+					value = -negamax(depth-1, -beta, -alpha, true, extension);
+				}
+				ply--;
 				board.undoMove();
+				movesSearched++;
 
 				// We found a new max, also keep track of move
 				if(value > bestValue) {
@@ -372,93 +1218,131 @@ extends AbstractSearcher<M,B> {
 				}				
 			}
 
-			updateTranspositionTable(alpha, beta, depth, bestValue, bestMove);
+			updateTranspositionTable(originalAlpha, beta, depth, bestValue, bestMove);
 
 			return bestValue;
 		}
 	}
 
 	// Quiescence Search With Transposition Table - Searches to make sure we aren't giving an
-	// artificial advantage to a move because of the limit in our depth tree
-	private int quiescenceSearch(int depth, int alpha, int beta) {
+	// artificial advantage to a move because of the limit in our depth tree.
+	// When in check every evasion is searched, since standing pat isn't an option
+	private int quiescenceSearch(int depth, int alpha, int beta, boolean checks) {
 		nodeCount++;
+		quiescenceNodeCount++;
+		int originalAlpha = alpha;
 
-		// We've already gone through depthIteration iterations of negamax
-		// so our real depth is depthIteration + the depth value in this call
-		int quiescenceDepth = depth + depthIteration;
+		// Quiescence results are stored at depth 0, so they never replace a real
+		// search of the position, and any stored search is good enough for us
+		int quiescenceDepth = 0;
 
 		// See if we have a cache hit
 		BoardInfo<M> boardInfo = transpositionTable.get(board.signature());
 
 		if((boardInfo != null) && (boardInfo.getDepth() >= quiescenceDepth)) {
+			int tableValue = valueFromTable(boardInfo);
 
 			// We can just return, because our guess is as good or better in the hash
 			if(boardInfo.getType() == BoardInfo.EXACT) {
-				return boardInfo.getValue();
+				return tableValue;
 			}
 
 			// Hash has a better lower bound, so set our current lower bound
 			else if(boardInfo.getType() == BoardInfo.LOWER &&
-					boardInfo.getValue() > alpha) {
-				alpha = boardInfo.getValue();
+					tableValue > alpha) {
+				alpha = tableValue;
 			}
 
 			// Hash has a better upper bound, so set our current upper bound
 			else if(boardInfo.getType() == BoardInfo.UPPER &&
-					boardInfo.getValue() < beta) {
-				beta = boardInfo.getValue();
+					tableValue < beta) {
+				beta = tableValue;
 			}
 
 			// If lower bound surpasses upper bound, return value (alpha/beta pruning)
 			if(alpha >= beta) {
-				return boardInfo.getValue();
+				return tableValue;
 			}
 		}
 
-		int value = evaluator.eval(board);		
+		int standPat = evaluator.eval(board);		
 
 		// Base case
 		if(depth == 0) {
-			return value;
+			return standPat;
 		}
 
-		// Standing pat causes a beta cutoff
-		if(value >= beta) {
-			return value;
-		}
+		boolean inCheck = board.inCheck();
+		LinkedList<M> moves;
 
-		LinkedList<M> moves = generateNonQuietMoves();					
+		if(inCheck) {
+			moves = generateOrderedMoves();
 
-		// We are in a "quiet" position, so finish
-		if(moves.isEmpty()) {
-			return value;
+			// No way out of check
+			if(moves.isEmpty()) {
+				return matedScore();
+			}
 		}
+		else {
 
-		// Standing pat score can become new alpha
-		if(value > alpha) {
-			alpha = value;
-		}		
+			// Standing pat causes a beta cutoff
+			if(standPat >= beta) {
+				return standPat;
+			}
+
+			moves = generateNonQuietMoves();
+			if(checks) {
+				moves.addAll(generateQuietChecks());
+			}
+
+			// We are in a "quiet" position, so finish
+			if(moves.isEmpty()) {
+				return standPat;
+			}
+
+			// Standing pat score can become new alpha
+			if(standPat > alpha) {
+				alpha = standPat;
+			}		
+		}
 
 		// Ordering is important for quiescence search since we're comparing captures
 		// so we need to distinguish the best moves. Empirically, sorting here is faster
 		Collections.sort(moves, moveComparator);
 		orderMoves(moves, boardInfo);
 
-		// Our best value up to this point is our lower bound
-		int bestValue = -evaluator.infty();
+		// We don't have to capture, so standing pat is our lower bound, unless we're in check
+		int bestValue = inCheck ? -evaluator.infty() : standPat;
+		int value;
 
 		// We know it's not empty...so just get any move to start
 		M bestMove = moves.getFirst();
 		for (M move : moves) {
 
 			// If we're out of time, get out of the loop and ignore these results
-			if(timer.timeup()) {
+			if(timeup()) {
 				return -evaluator.infty();
 			}
 
+			if (quiescencePruning && !inCheck && move.isCapture() && !move.isPromotion()) {
+
+				// Delta pruning - even winning the piece for free leaves us below alpha
+				int victimValue = move.getCapture().exchangeValue() * evaluator.weightOfPawn() / 100;
+				if (standPat + victimValue + DELTA_MARGIN * evaluator.weightOfPawn() <= alpha) {
+					continue;
+				}
+
+				// We lose material once the exchange on that square plays out
+				if (board.staticExchange(move) < 0) {
+					continue;
+				}
+			}
+
 			// Compute the new best value
 			board.applyMove(move);
-			value = -quiescenceSearch(depth-1, -beta, -alpha);
+			ply++;
+			value = -quiescenceSearch(depth-1, -beta, -alpha, false);
+			ply--;
 			board.undoMove();
 
 			// We found a new max, also keep track of move
@@ -479,20 +1363,32 @@ extends AbstractSearcher<M,B> {
 			}
 		}
 
-		updateTranspositionTable(alpha, beta, quiescenceDepth, bestValue, bestMove);
+		updateTranspositionTable(originalAlpha, beta, quiescenceDepth, bestValue, bestMove);
 		return bestValue;
 	}
 
-	// Store results in the transposition table as a lower bound, upper bound, or exact value	
+	// Store results in the transposition table as a lower bound, upper bound, or exact value.
+	// Alpha has to be the value the node was called with, not the one raised during the search.
+	// A search that was cut short stores nothing, since its values are made up and a table
+	// that's reused would take them into the next search
 	private void updateTranspositionTable(int alpha, int beta, int depth, int bestValue, M bestMove) {
+		if (cutShort()) {
+			return;
+		}
+
+		int tableValue = valueToTable(bestValue);
+
+		// Failed low, so the real value is at most bestValue
 		if(bestValue <= alpha) {
-			updateTranspositionTable(bestValue, bestMove, BoardInfo.LOWER, depth);
+			updateTranspositionTable(tableValue, bestMove, BoardInfo.UPPER, depth);
 		}
+
+		// Failed high, so the real value is at least bestValue
 		else if(bestValue >= beta) {
-			updateTranspositionTable(bestValue, bestMove, BoardInfo.UPPER, depth);				
+			updateTranspositionTable(tableValue, bestMove, BoardInfo.LOWER, depth);				
 		}
 		else {
-			updateTranspositionTable(bestValue, bestMove, BoardInfo.EXACT, depth);
+			updateTranspositionTable(tableValue, bestMove, BoardInfo.EXACT, depth);
 		}				
 	}
 
@@ -500,25 +1396,131 @@ extends AbstractSearcher<M,B> {
 	private void updateTranspositionTable(int value, M move, int type, int depth) {
 		BoardInfo<M> boardInfo = transpositionTable.get(board.signature());
 		if(boardInfo != null) {
+
+			// Put it back, since a shared table only hands out copies
 			boardInfo.updateInfo(value, move, type, depth);
+			transpositionTable.put(board.signature(), boardInfo);
 		}
 		else {
 			transpositionTable.put(board.signature(), new BoardInfo<M>(value, move, type, depth));
 		}
 	}
 
-	// Adds the killer moves to the top of the list
+	// Null window search of every move but the excluded one, to see if any of them
+	// reach beta. Nothing is stored for this node, since a move was left out
+	private int excludedSearch(LinkedList<M> moves, M excluded, int depth, int beta, int extension) {
+		int bestValue = -evaluator.infty();
+
+		for (M move : moves) {
+			if (move.equals(excluded)) {
+				continue;
+			}
+
+			board.applyMove(move);
+			ply++;
+			bestValue = Math.max(bestValue, -negamax(depth - 1, -beta, -beta + 1, true, extension));
+			ply--;
+			board.undoMove();
+
+			if (bestValue >= beta || timeup()) {
+				break;
+			}
+		}
+		return bestValue;
+	}
+
+	// The most a path can be extended, in fractions of a ply
+	private int maxExtension() {
+		return Math.max(depthIteration, 2) * ONE_PLY / 2;
+	}
+
+	// Looks up each child in the transposition table for an upper bound on its value
+	// that is good enough to fail high here. Returns the best value found that way
+	private int transpositionCutoff(LinkedList<M> moves, int depth, int beta) {
+		int bestValue = -evaluator.infty();
+
+		for (M move : moves) {
+			board.applyMove(move);
+			ply++;
+			BoardInfo<M> childInfo = transpositionTable.get(board.signature());
+
+			// Repeated positions aren't scored by their table entries
+			if (childInfo != null && childInfo.getDepth() >= depth - 1 &&
+					childInfo.getType() != BoardInfo.LOWER && !boardCount.isRepetition(board)) {
+				bestValue = Math.max(bestValue, -valueFromTable(childInfo));
+			}
+			ply--;
+			board.undoMove();
+
+			if (bestValue >= beta) {
+				break;
+			}
+		}
+		return bestValue;
+	}
+
+	// Score for being mated at the current ply. Mating sooner scores higher,
+	// and every mate score is beyond evaluator.mate()
+	private int matedScore() {
+		return -(evaluator.mate() + MAX_PLY - ply);
+	}
+
+	// Number of plies from the root to the mate, for a mate score
+	private int mateDistance(int value) {
+		return evaluator.mate() + MAX_PLY - Math.abs(value);
+	}
+
+	// Mate scores are stored as the distance from the stored node rather
+	// than from the root, so they're still right when probed at another ply
+	private int valueToTable(int value) {
+		if (value >= evaluator.mate()) {
+			return value + ply;
+		}
+		else if (value <= -evaluator.mate()) {
+			return value - ply;
+		}
+		return value;
+	}
+
+	// Converts a value stored in the transposition table back to this ply
+	private int valueFromTable(BoardInfo<M> boardInfo) {
+		int value = boardInfo.getValue();
+		if (value >= evaluator.mate()) {
+			return value - ply;
+		}
+		else if (value <= -evaluator.mate()) {
+			return value + ply;
+		}
+		return value;
+	}
+
+	// Quiet moves don't capture or promote
+	private boolean isQuiet(M move) {
+		return !(move.isCapture() || move.isEnpassant() || move.isPromotion());
+	}
+
+	// True if the move is one of the two moves stored in the transposition table
+	private boolean isHashMove(M move, BoardInfo<M> boardInfo) {
+		return boardInfo != null &&
+				(move.equals(boardInfo.getBestMove()) || move.equals(boardInfo.getSecondBestMove()));
+	}
+
+	// Adds the killer moves to the top of the list. Our own copies of them are
+	// moved, since moves in a shared table can come from another thread's board
 	private void orderMoves(LinkedList<M> moves, BoardInfo<M> boardInfo) {
 		if(boardInfo != null) {
-			if(boardInfo.getSecondBestMove() != null) {
-				moves.remove(boardInfo.getSecondBestMove());
-				moves.addFirst(boardInfo.getSecondBestMove());					
-			}
-			moves.remove(boardInfo.getBestMove());
-			moves.addFirst(boardInfo.getBestMove());				
+			moveToFront(moves, boardInfo.getSecondBestMove());
+			moveToFront(moves, boardInfo.getBestMove());
 		}		
 	}
 
+	private void moveToFront(LinkedList<M> moves, M move) {
+		int index = moves.indexOf(move);
+		if (index > 0) {
+			moves.addFirst(moves.remove(index));
+		}
+	}
+
 	// Order the moves (captures/promotions first)
 	// Doing a full sort in this method was not cost effective
 	private LinkedList<M> generateOrderedMoves() {
@@ -539,6 +1541,16 @@ extends AbstractSearcher<M,B> {
 		return moves;
 	}
 
+	// Legal moves at the root, sorted, and only the search moves if there are any
+	private LinkedList<M> generateRootMoves() {
+		LinkedList<M> moves = generateOrderedMoves();
+		Collections.sort(moves, moveComparator);
+		if (searchMoves != null) {
+			moves.retainAll(searchMoves);
+		}
+		return moves;
+	}
+
 	// Generates a list of moves that are only captures and promotions
 	public LinkedList<M> generateNonQuietMoves() {
 		List<M> psmoves = board.generatePseudoMoves();
@@ -560,19 +1572,190 @@ extends AbstractSearcher<M,B> {
 		return moves;
 	}
 
-	private Comparator<M> moveComparator = new Comparator<M>() {
-		public int compare (M move1, M move2) {
-			int score1, score2;
+	// Generates a list of quiet moves that put the opponent in check
+	private LinkedList<M> generateQuietChecks() {
+		List<M> psmoves = board.generatePseudoMoves();
+		LinkedList<M> moves = new LinkedList<M>();
+		Set<M> setmoves = new HashSet<M>(256);
 
-			board.applyMove(move1);	
-			score1 = evaluator.eval(board);
-			board.undoMove();
+		for(M m : psmoves) {
+			if(setmoves.add(m) && board.isLegalPseudoMove(m) && isQuiet(m)) {
+				board.applyMove(m);
+				if(board.inCheck()) {
+					moves.add(m);
+				}
+				board.undoMove();
+			}
+		}
+		return moves;
+	}
+
+	private Comparator<M> moveComparator = createMoveComparator();
+
+	// Orders moves by the evaluation after making them, on this searcher's board
+	private Comparator<M> createMoveComparator() {
+		return new Comparator<M>() {
+			public int compare (M move1, M move2) {
+				int score1, score2;
+
+				board.applyMove(move1);	
+				score1 = evaluator.eval(board);
+				board.undoMove();
 
-			board.applyMove(move2);
-			score2 = evaluator.eval(board);
+				board.applyMove(move2);
+				score2 = evaluator.eval(board);
+				board.undoMove();
+
+				return score1 - score2;
+			}
+		};
+	}
+
+	// Fills in the search info for a line of a completed iteration, with the
+	// principal variation followed through the transposition table, and tells
+	// the listeners. line counts from 1, for the best line
+	private void reportSearchInfo(M bestMove, int score, int line) {
+		searchInfo.setLine(line);
+		searchInfo.setBestMove(bestMove);
+		searchInfo.setScore(score);
+		searchInfo.clearPv();
+		searchInfo.addPvMove(bestMove);
+
+		// Table moves are only followed if they're legal here, and we take the
+		// generated move itself, since another thread may be playing the stored one
+		board.applyMove(bestMove);
+		int played = 1;
+		while (played < depthIteration) {
+			BoardInfo<M> boardInfo = transpositionTable.get(board.signature());
+			if (boardInfo == null || boardInfo.getBestMove() == null) {
+				break;
+			}
+			LinkedList<M> moves = generateOrderedMoves();
+			int index = moves.indexOf(boardInfo.getBestMove());
+			if (index < 0 || !searchInfo.addPvMove(moves.get(index))) {
+				break;
+			}
+			board.applyMove(moves.get(index));
+			played++;
+		}
+		for (int i = 0; i < played; i++) {
 			board.undoMove();
+		}
+
+		searchInfo.setHashFull(transpositionTable.hashFull());
+		fireBestMoveChanged();
+	}
+
+	// Starts the helper threads for Lazy SMP, if there are any
+	private void startHelpers() {
+		if (threads <= 1) {
+			return;
+		}
+
+		helperTimer = new HelperTimer();
+		helpers = new ArrayList<Negamax<M, B>>();
+		helperThreads = new ArrayList<Thread>();
+		for (int i = 1; i < threads; i++) {
+			final Negamax<M, B> helper = createHelper(i);
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					helper.helperSearch();
+				}
+			}, "Negamax helper " + i);
+			thread.setDaemon(true);
+			thread.start();
+			helpers.add(helper);
+			helperThreads.add(thread);
+		}
+	}
+
+	// Stops the helper threads and adds their nodes to ours
+	private void stopHelpers() {
+		if (helperThreads == null) {
+			return;
+		}
 
-			return score1 - score2;
+		helperTimer.stop();
+		for (Negamax<M, B> helper : helpers) {
+			helper.pollNow = true;
 		}
-	};
+		for (Thread thread : helperThreads) {
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (Negamax<M, B> helper : helpers) {
+			nodeCount += helper.nodeCount;
+			quiescenceNodeCount += helper.quiescenceNodeCount;
+		}
+		helpers = null;
+		helperThreads = null;
+	}
+
+	// A copy of this searcher with its own board, repetition counts and move
+	// ordering, sharing our settings, evaluator and transposition table
+	@SuppressWarnings("unchecked")
+	private Negamax<M, B> createHelper(int index) {
+		Negamax<M, B> helper;
+		try {
+			helper = (Negamax<M, B>) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+
+		helper.board = board.copy();
+		helper.boardCount = boardCount.copy();
+		helper.moveComparator = helper.createMoveComparator();
+		helper.timer = helperTimer;
+		helper.clock = helperTimer;
+		helper.timeManager = null;
+		helper.deadline = 0;
+		helper.nodeLimit = 0;
+		helper.alarms = new ArrayList<ScheduledFuture<?>>();
+		helper.ponderHitPending = false;
+		helper.multiPv = 1;
+		helper.helperIndex = index;
+		helper.helpers = null;
+		helper.helperThreads = null;
+		helper.nodeCount = 0;
+		helper.quiescenceNodeCount = 0;
+		return helper;
+	}
+
+	// Iterative deepening for a helper thread. Its results only matter
+	// through what it leaves in the shared table
+	private void helperSearch() {
+		LinkedList<M> moves = generateRootMoves();
+
+		for (depthIteration = 1 + helperIndex % 2; depthIteration <= depthLimit; depthIteration++) {
+			M bestMove = rootNegaMax(moves, depthIteration, -evaluator.infty(), evaluator.infty());
+			if (bestMove == null) {
+				break;
+			}
+			moves.remove(bestMove);
+			moves.addFirst(bestMove);
+		}
+	}
+
+	// Helpers search until the main thread stops them
+	private static class HelperTimer implements Timer {
+		private volatile boolean stopped = false;
+
+		public void stop() {
+			stopped = true;
+		}
+
+		public boolean timeup() {
+			return stopped;
+		}
+
+		public void start(int myTime, int opTime) {}
+		public void notOkToTimeup() {}
+		public void okToTimeup() {}
+		public boolean hurryUp() {
+			return false;
+		}
+	}
 }
\ No newline at end of file
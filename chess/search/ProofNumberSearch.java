@@ -0,0 +1,342 @@
+package chess.search;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import chess.board.Board;
+import chess.board.Move;
+import chess.gui.Config;
+
+/**
+ * A mate solver that uses depth-first proof-number search (df-pn):
+ *
+ * Proof and disproof numbers, kept in a fixed size table (ProofTable)
+ * Thresholds, so it only goes back up the tree when a sibling looks better
+ * Checks tried first, by starting quiet moves with a higher proof number
+ * Repetitions and positions past the mate length count as no mate
+ * Iterative deepening on the mate length (optional)
+ *
+ * The side to move at the root is the attacker. A proven line is always a
+ * forced mate, but only the shortest one if asked for. Positions it ran out of
+ * nodes on, and positions without a mate, are both just not proven.
+ *
+ * Resources:
+ * Nagai, "Df-pn Algorithm for Searching AND/OR Trees and Its Applications" (2002)
+ * Allis, van der Meulen and van den Herik, "Proof-Number Search" (1994)
+ */
+public class ProofNumberSearch<M extends Move<M>, B extends Board<M,B>> {
+
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+	// Proof number a quiet attacking move starts with. Checks start at 1
+	private final int QUIET_PROOF = 3;
+
+	// The table holds 2^TABLE_BITS entries
+	private final int TABLE_BITS = 20;
+	private ProofTable table;
+
+	private int maxMoves = 10;
+	private long nodeLimit = 5000000;
+	private boolean shortestMate;
+
+	private B board;
+	private int ply;
+	private int maxPly;
+	private long nodeCount;
+
+	// Signatures of the positions on the current line, to spot repetitions
+	private final Set<Long> path = new HashSet<Long>();
+
+	// Numbers of the child last looked at, from the child's side
+	private int childPhi;
+	private int childDelta;
+
+	/**
+	 * Sets the longest mate looked for, in moves by the attacker. Defaults to 10.
+	 *
+	 * @param moves the longest mate.
+	 */
+	public void setMaxMoves(int moves) {
+		maxMoves = moves;
+	}
+
+	/**
+	 * Sets how many nodes a solve may search before giving up. Defaults to 5,000,000.
+	 *
+	 * @param nodes the node limit.
+	 */
+	public void setNodeLimit(long nodes) {
+		nodeLimit = nodes;
+	}
+
+	/**
+	 * Looks for mates one move longer at a time, so the mate found is about the
+	 * shortest, at the cost of disproving every shorter mate first. Off by default.
+	 */
+	public void setShortestMate(boolean shortestMate) {
+		this.shortestMate = shortestMate;
+	}
+
+	/**
+	 * @return The number of nodes searched by the last solve.
+	 */
+	public long nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Looks for a forced mate by the side to move. The board is left as it was.
+	 *
+	 * @param board the position.
+	 * @return the moves of a mating line, ending in mate, or null if no mate
+	 * was proven within the node limit and mate length.
+	 */
+	public List<M> solve(B board) {
+		this.board = board;
+		nodeCount = 0;
+		ply = 0;
+		path.clear();
+
+		if (table == null) {
+			table = new ProofTable(TABLE_BITS);
+		}
+		table.clear();
+
+		// For the shortest mate, look for longer mates only once the shorter ones are
+		// disproven. Disproofs remember how deep they looked, so the table is kept
+		List<M> line = null;
+		for (int moves = shortestMate ? 1 : maxMoves; moves <= maxMoves && line == null && nodeCount < nodeLimit; moves++) {
+			maxPly = 2 * moves - 1;
+			mid(INFINITY, INFINITY);
+			if (proven()) {
+				line = mateLine();
+			}
+		}
+
+		if (Config.debug) {
+			System.out.println("Proof-number search: " + (line == null ? "not proven" : "mate in " + (line.size() + 1) / 2) +
+					", " + NumberFormat.getNumberInstance(Locale.US).format(nodeCount) + " nodes");
+		}
+		return line;
+	}
+
+	// The attacker moves at even plies, and wants a proof. The defender moves at odd
+	// plies, and wants a disproof. Phi is the number the side to move is trying to get
+	// to zero, and delta is the other one
+	private boolean attacker() {
+		return ply % 2 == 0;
+	}
+
+	// Multiple iterative deepening - searches below the node until its phi or delta
+	// reaches the thresholds, then stores its numbers
+	private void mid(int thresholdPhi, int thresholdDelta) {
+		nodeCount++;
+		long work = nodeCount;
+		long signature = board.signature();
+
+		List<M> moves = generateMoves();
+
+		// No moves: mate if the defender is in check, otherwise no mate
+		if (moves.isEmpty()) {
+			boolean mate = !attacker() && board.inCheck();
+			store(mate ? 0 : INFINITY, mate ? INFINITY : 0, work);
+			return;
+		}
+
+		// The attacker ran out of moves to mate in
+		if (ply >= maxPly) {
+			store(INFINITY, 0, work);
+			return;
+		}
+
+		// Children are looked up by signature, so each move is only made once here
+		List<M> children = new ArrayList<M>(moves);
+		long[] childSignatures = new long[children.size()];
+		boolean[] checks = new boolean[children.size()];
+		for (int i = 0; i < children.size(); i++) {
+			board.applyMove(children.get(i));
+			childSignatures[i] = board.signature();
+			checks[i] = board.inCheck();
+			board.undoMove();
+		}
+
+		path.add(signature);
+		while (true) {
+			int phi = INFINITY;
+			int delta = 0;
+			int secondPhi = INFINITY;
+			int bestDelta = 0;
+			int best = -1;
+
+			// phi is the smallest child delta, and delta the sum of the child phis
+			for (int i = 0; i < children.size(); i++) {
+				childNumbers(childSignatures[i], checks[i]);
+				delta = Math.min(delta + childPhi, INFINITY);
+
+				if (childDelta < phi) {
+					secondPhi = phi;
+					phi = childDelta;
+					bestDelta = childPhi;
+					best = i;
+				}
+				else if (childDelta < secondPhi) {
+					secondPhi = childDelta;
+				}
+			}
+
+			if (phi >= thresholdPhi || delta >= thresholdDelta || nodeCount >= nodeLimit) {
+				storePhiDelta(phi, delta, work);
+				break;
+			}
+
+			// Search the most promising child until it's no longer the best
+			int childThresholdPhi = Math.min(thresholdDelta - delta + bestDelta, INFINITY);
+			int childThresholdDelta = Math.min(thresholdPhi, secondPhi + 1);
+
+			board.applyMove(children.get(best));
+			ply++;
+			mid(childThresholdPhi, childThresholdDelta);
+			ply--;
+			board.undoMove();
+		}
+		path.remove(signature);
+	}
+
+	// Sets childPhi and childDelta for the child with this signature. check is
+	// whether the move into it gives check
+	private void childNumbers(long signature, boolean check) {
+		int proof;
+		int disproof;
+		int index = table.find(signature);
+		boolean attackerMoved = attacker();
+
+		// A repetition is no mate
+		if (path.contains(signature)) {
+			proof = INFINITY;
+			disproof = 0;
+		}
+
+		// A disproof only holds with as many plies left as when it was found
+		else if (index >= 0 && (table.getDisproof(index) != 0 || table.getDepth(index) >= maxPly - ply - 1)) {
+			proof = table.getProof(index);
+			disproof = table.getDisproof(index);
+		}
+
+		// Unknown, so guess checks are more likely to mate
+		else {
+			proof = (!attackerMoved || check) ? 1 : QUIET_PROOF;
+			disproof = 1;
+		}
+
+		// The child's side to move is the other one
+		if (attackerMoved) {
+			childPhi = disproof;
+			childDelta = proof;
+		}
+		else {
+			childPhi = proof;
+			childDelta = disproof;
+		}
+	}
+
+	private void storePhiDelta(int phi, int delta, long work) {
+		if (attacker()) {
+			store(phi, delta, work);
+		}
+		else {
+			store(delta, phi, work);
+		}
+	}
+
+	private void store(int proof, int disproof, long work) {
+		table.store(board.signature(), proof, disproof, maxPly - ply, nodeCount - work + 1);
+	}
+
+	private boolean proven() {
+		int index = table.find(board.signature());
+		return index >= 0 && table.getProof(index) == 0;
+	}
+
+	// Follows proven children down to the mate. The attacker takes any proven move,
+	// and the defender the one whose proof took the most work. If the table lost
+	// part of the proof, the node is solved again. A proof can be reused with fewer
+	// plies left than it was found with, so the line may run past maxPly, but never
+	// twice as far
+	private List<M> mateLine() {
+		List<M> line = new ArrayList<M>();
+		boolean mated = false;
+
+		while (line.size() <= 2 * maxPly) {
+			List<M> moves = generateMoves();
+			if (moves.isEmpty()) {
+				mated = !attacker() && board.inCheck();
+				break;
+			}
+
+			M next = provenChild(moves);
+			if (next == null) {
+				mid(INFINITY, INFINITY);
+				next = provenChild(moves);
+			}
+			if (next == null) {
+				break;
+			}
+
+			board.applyMove(next);
+			ply++;
+			line.add(next);
+		}
+
+		while (ply > 0) {
+			board.undoMove();
+			ply--;
+		}
+		return mated ? line : null;
+	}
+
+	// The attacker's first proven move, or the defender's most worked on one.
+	// Returns null if the attacker has none, or any defender move isn't proven
+	private M provenChild(List<M> moves) {
+		M best = null;
+		long mostWork = -1;
+
+		for (M move : moves) {
+			board.applyMove(move);
+			int index = table.find(board.signature());
+			boolean proven = index >= 0 && table.getProof(index) == 0;
+			long work = proven ? table.getWork(index) : 0;
+			board.undoMove();
+
+			if (attacker() && proven) {
+				return move;
+			}
+			else if (!attacker() && !proven) {
+				return null;
+			}
+			else if (!attacker() && work > mostWork) {
+				mostWork = work;
+				best = move;
+			}
+		}
+		return best;
+	}
+
+	// Legal moves
+	private LinkedList<M> generateMoves() {
+		List<M> psmoves = board.generatePseudoMoves();
+		LinkedList<M> moves = new LinkedList<M>();
+		Set<M> setmoves = new HashSet<M>(256);
+
+		for (M m : psmoves) {
+			if (setmoves.add(m) && board.isLegalPseudoMove(m)) {
+				moves.add(m);
+			}
+		}
+		return moves;
+	}
+}
@@ -0,0 +1,93 @@
+package chess.search;
+
+/**
+ *
+ * A fixed size table of proof and disproof numbers for proof-number search.
+ * Entries are kept in parallel arrays in buckets of two, indexed by the low
+ * bits of the board signature. A new entry replaces whichever of the two took
+ * less work to find, so the results of big searches survive the longest.
+ *
+ */
+public class ProofTable {
+
+	private final int mask;
+	private final long[] keys;
+	private final int[] proofs;
+	private final int[] disproofs;
+	private final byte[] depths;
+	private final long[] works;
+
+	/**
+	 * @param bits the table holds 2^bits entries.
+	 */
+	public ProofTable(int bits) {
+		int size = 1 << bits;
+		mask = size - 2;
+		keys = new long[size];
+		proofs = new int[size];
+		disproofs = new int[size];
+		depths = new byte[size];
+		works = new long[size];
+		clear();
+	}
+
+	// Empties the table
+	public void clear() {
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = 0;
+			works[i] = -1;
+		}
+	}
+
+	// Index of the entry for this signature, or -1 if it isn't stored
+	public int find(long signature) {
+		int index = (int) signature & mask;
+		if (keys[index] == signature && works[index] >= 0) {
+			return index;
+		}
+		if (keys[index + 1] == signature && works[index + 1] >= 0) {
+			return index + 1;
+		}
+		return -1;
+	}
+
+	// Accessors, by the index find() returned
+	public int getProof(int index) {
+		return proofs[index];
+	}
+
+	public int getDisproof(int index) {
+		return disproofs[index];
+	}
+
+	// Plies left to search when the entry was stored
+	public int getDepth(int index) {
+		return depths[index];
+	}
+
+	// Nodes searched to find the entry
+	public long getWork(int index) {
+		return works[index];
+	}
+
+	/**
+	 * Stores the numbers for a position. work is how many nodes were
+	 * searched to find them, which decides what gets replaced.
+	 */
+	public void store(long signature, int proof, int disproof, int depth, long work) {
+		int index = find(signature);
+
+		if (index < 0) {
+			index = (int) signature & mask;
+			if (works[index + 1] < works[index]) {
+				index++;
+			}
+		}
+
+		keys[index] = signature;
+		proofs[index] = proof;
+		disproofs[index] = disproof;
+		depths[index] = (byte) Math.min(depth, Byte.MAX_VALUE);
+		works[index] = work;
+	}
+}
@@ -0,0 +1,131 @@
+package chess.search;
+
+import chess.board.Move;
+
+/**
+ *
+ * What a searcher tells its SearchListeners. One of these belongs to each
+ * searcher and is refilled in place, so the values are only good until the
+ * callback returns. Scores are from the side to move at the root, with mates
+ * beyond the evaluator's mate value.
+ *
+ */
+public class SearchInfo<M extends Move<M>> {
+
+	/**
+	 * The longest principal variation kept.
+	 */
+	public static final int MAX_PV = 64;
+
+	private int depth;
+	private int line = 1;
+	private int score;
+	private M bestMove;
+	private final Object[] pv = new Object[MAX_PV];
+	private int pvLength;
+	private long nodes;
+	private long elapsedMillis;
+	private int hashFull = -1;
+
+	// Iteration being searched
+	public int getDepth() {
+		return depth;
+	}
+
+	// Which line of a multi-PV search the score and principal variation
+	// are for, from 1 for the best. Always 1 otherwise
+	public int getLine() {
+		return line;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public M getBestMove() {
+		return bestMove;
+	}
+
+	// Moves in the principal variation, starting with the best move
+	public int getPvLength() {
+		return pvLength;
+	}
+
+	@SuppressWarnings("unchecked")
+	public M getPvMove(int index) {
+		return (M) pv[index];
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public long getNodesPerSecond() {
+		return elapsedMillis == 0 ? 0 : nodes * 1000 / elapsedMillis;
+	}
+
+	// Transposition table use in thousandths, or -1 if the searcher doesn't have one
+	public int getHashFull() {
+		return hashFull;
+	}
+
+	// Filled in by the searchers
+	void clear() {
+		depth = 0;
+		line = 1;
+		score = 0;
+		bestMove = null;
+		clearPv();
+		nodes = 0;
+		elapsedMillis = 0;
+		hashFull = -1;
+	}
+
+	void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	void setLine(int line) {
+		this.line = line;
+	}
+
+	void setScore(int score) {
+		this.score = score;
+	}
+
+	void setBestMove(M bestMove) {
+		this.bestMove = bestMove;
+	}
+
+	void clearPv() {
+		for (int i = 0; i < pvLength; i++) {
+			pv[i] = null;
+		}
+		pvLength = 0;
+	}
+
+	// Returns false once the principal variation is full
+	boolean addPvMove(M move) {
+		if (pvLength == MAX_PV) {
+			return false;
+		}
+		pv[pvLength++] = move;
+		return true;
+	}
+
+	void setNodes(long nodes) {
+		this.nodes = nodes;
+	}
+
+	void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	void setHashFull(int hashFull) {
+		this.hashFull = hashFull;
+	}
+}
@@ -0,0 +1,147 @@
+package chess.search;
+
+import java.util.List;
+
+import chess.board.Move;
+
+/**
+ *
+ * What a search is allowed to do, for Searcher.search(). Limits that aren't
+ * set don't apply, and the search ends at the first limit it reaches. With
+ * no limits at all, it searches to the searcher's max depth, or until stop().
+ *
+ * The clock goes through the searcher's Timer, which decides how much of it
+ * to use and won't stop before the minimum depth. The other limits are hard,
+ * and cut even the minimum depth short.
+ *
+ */
+public class SearchLimits<M extends Move<M>> {
+
+	private int myTime = -1;
+	private int opTime = -1;
+	private long moveTime;
+	private int depth;
+	private long nodes;
+	private int mate;
+	private List<M> searchMoves;
+	private int multiPv = 1;
+	private boolean played;
+	private boolean ponder;
+
+	/**
+	 * Sets the game clocks, for the Timer to allocate from.
+	 *
+	 * @param myTime the remaining time on your clock.
+	 * @param opTime the remaining time on your opponent's clock.
+	 */
+	public void setClock(int myTime, int opTime) {
+		this.myTime = myTime;
+		this.opTime = opTime;
+	}
+
+	public boolean hasClock() {
+		return myTime >= 0;
+	}
+
+	public int getMyTime() {
+		return myTime;
+	}
+
+	public int getOpTime() {
+		return opTime;
+	}
+
+	/**
+	 * Searches for exactly this long, in milliseconds.
+	 */
+	public void setMoveTime(long millis) {
+		moveTime = millis;
+	}
+
+	public long getMoveTime() {
+		return moveTime;
+	}
+
+	/**
+	 * Searches no deeper than this many plies.
+	 */
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Stops after about this many nodes.
+	 */
+	public void setNodes(long nodes) {
+		this.nodes = nodes;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Looks for a mate in this many moves, and stops once it's found.
+	 */
+	public void setMate(int moves) {
+		mate = moves;
+	}
+
+	public int getMate() {
+		return mate;
+	}
+
+	/**
+	 * Only searches these moves at the root.
+	 */
+	public void setSearchMoves(List<M> moves) {
+		searchMoves = moves;
+	}
+
+	// The root moves to search, or null for all of them
+	public List<M> getSearchMoves() {
+		return searchMoves;
+	}
+
+	/**
+	 * Finds this many best lines, each with its own exact score and
+	 * principal variation. Defaults to 1.
+	 */
+	public void setMultiPv(int lines) {
+		multiPv = Math.max(lines, 1);
+	}
+
+	public int getMultiPv() {
+		return multiPv;
+	}
+
+	/**
+	 * Takes the result as the move played, like getBestMove() does. The
+	 * position and move count towards repetitions, and the book may be used.
+	 */
+	public void setPlayed(boolean played) {
+		this.played = played;
+	}
+
+	public boolean isPlayed() {
+		return played;
+	}
+
+	/**
+	 * Searches on the opponent's time, ignoring the clock until ponderHit()
+	 * gives it one. A ponder search that runs out of depth waits for the hit
+	 * or a stop. It only counts as played if it was hit. It keeps a stop that
+	 * comes before it starts, so the stop has to be cleared before then.
+	 */
+	public void setPonder(boolean ponder) {
+		this.ponder = ponder;
+	}
+
+	public boolean isPonder() {
+		return ponder;
+	}
+}
@@ -0,0 +1,33 @@
+package chess.search;
+
+import chess.board.Move;
+
+/**
+ * Receives progress from a Searcher as it searches. Every callback gets the
+ * same SearchInfo, which the searcher refills in place, so nothing is allocated
+ * while searching. Listeners are called on the search thread, so they should
+ * return quickly, and must copy anything they want to keep after returning.
+ */
+public interface SearchListener<M extends Move<M>> {
+
+	/**
+	 * An iteration is starting. Only the depth is new.
+	 */
+	public void iterationStarted(SearchInfo<M> info);
+
+	/**
+	 * An iteration was searched completely. Iterations cut short by the timer aren't reported.
+	 */
+	public void iterationFinished(SearchInfo<M> info);
+
+	/**
+	 * The search has a new best move, with its score and principal variation.
+	 * A multi-PV search calls this for each line in turn, with its line number.
+	 */
+	public void bestMoveChanged(SearchInfo<M> info);
+
+	/**
+	 * Node counts and timing, every so many nodes.
+	 */
+	public void statistics(SearchInfo<M> info);
+}
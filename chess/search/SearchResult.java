@@ -0,0 +1,74 @@
+package chess.search;
+
+import java.util.Collections;
+import java.util.List;
+
+import chess.board.Move;
+
+/**
+ *
+ * What a search found, from Searcher.search(). The score is from the side to
+ * move, with mates beyond the evaluator's mate value. The depth is the last
+ * iteration searched completely, and is 0 if the search was stopped before
+ * finishing one, when the best move is just the first one it would have tried.
+ *
+ */
+public class SearchResult<M extends Move<M>> {
+
+	private final M bestMove;
+	private final int score;
+	private final int depth;
+	private final List<M> pv;
+	private final long nodes;
+	private final long elapsedMillis;
+	private final List<SearchResult<M>> lines;
+
+	public SearchResult(M bestMove, int score, int depth, List<M> pv, long nodes, long elapsedMillis) {
+		this(bestMove, score, depth, pv, nodes, elapsedMillis, null);
+	}
+
+	/**
+	 * For a multi-PV search. Each line is a result of its own, best first.
+	 */
+	public SearchResult(M bestMove, int score, int depth, List<M> pv, long nodes, long elapsedMillis,
+			List<SearchResult<M>> lines) {
+		this.bestMove = bestMove;
+		this.score = score;
+		this.depth = depth;
+		this.pv = Collections.unmodifiableList(pv);
+		this.nodes = nodes;
+		this.elapsedMillis = elapsedMillis;
+		this.lines = (lines == null) ? Collections.singletonList(this) : Collections.unmodifiableList(lines);
+	}
+
+	public M getBestMove() {
+		return bestMove;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	// The principal variation, starting with the best move
+	public List<M> getPv() {
+		return pv;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	// The best lines of a multi-PV search, best first, with their own moves,
+	// scores and principal variations. Otherwise just this result
+	public List<SearchResult<M>> getLines() {
+		return lines;
+	}
+}
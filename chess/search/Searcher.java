@@ -24,6 +24,16 @@ public interface Searcher
 	 */
 	public M    getBestMove   (B board, int myTime, int opTime);
 	
+	/**
+	 * Searches the position within the limits given. The result is only
+	 * taken as the move played, like getBestMove()'s, if the limits say so.
+	 * 
+	 * @param board the position to search.
+	 * @param limits what the search may do.
+	 * @return the best move, with its score, principal variation and counts.
+	 */
+	public SearchResult<M> search(B board, SearchLimits<M> limits);
+	
 	/**
 	 * Sets the minimum depth to search.
 	 * 
@@ -71,10 +81,34 @@ public interface Searcher
 	/**
 	 * Add a new Observer to the list of Observers to notify
 	 * when the Searcher's state changes (such as when a new best
-	 * move is found during the search).  This is typically done
-	 * by extending the Observable class and using its addObserver,
-	 * setChanged, and notifyObservers methods.
+	 * move is found during the search).  Observers are notified
+	 * on their own thread, never the search thread, and only see
+	 * the latest move if they fall behind.
 	 * @param o the new Observer
 	 */
 	public void addBestMoveObserver(Observer o);
+	
+	/**
+	 * Takes the latest best move found since the last call, for
+	 * consumers that would rather poll than observe. Never blocks.
+	 * @return the move, or null if there's no new one.
+	 */
+	public M    pollBestMove  ();
+	
+	/**
+	 * Adds a listener for the search's progress: iterations, best
+	 * moves with their score and principal variation, and statistics.
+	 * Listeners are called on the search thread.
+	 * @param listener the new listener
+	 */
+	public void addSearchListener(SearchListener<M> listener);
+	
+	/**
+	 * Asks the search running on another thread to stop. It unwinds
+	 * with the board as it was, and returns the best move of the last
+	 * completed iteration. Safe to call from any thread. A stop that
+	 * comes before a search starts is forgotten when it does, unless
+	 * it's a ponder search.
+	 */
+	public void stop();
 }
@@ -0,0 +1,105 @@
+package chess.search;
+
+import chess.board.Move;
+
+/**
+ *
+ * A fixed size transposition table that several search threads can read and write
+ * without locking. Each entry's value, bound type and depths are packed into one
+ * long, and the key is stored XORed with that long and the moves' hash codes. A read
+ * that races with a write gets a key that doesn't match, and is treated as a miss.
+ *
+ * get() returns a copy of the entry, so changes to it have to be put() back.
+ * put() keeps copies of the moves, since the moves it's given belong to the
+ * putting thread's board, and change as that thread moves its pieces. The
+ * copies are never applied, only compared with the reader's own moves.
+ *
+ */
+public class SharedTranspositionTable<M extends Move<M>> implements TranspositionTable<M> {
+
+	private final int mask;
+	private final long[] keys;
+	private final long[] data;
+	private final Object[] bestMoves;
+	private final Object[] secondMoves;
+
+	/**
+	 * @param bits the table holds 2^bits entries.
+	 */
+	public SharedTranspositionTable(int bits) {
+		int size = 1 << bits;
+		mask = size - 1;
+		keys = new long[size];
+		data = new long[size];
+		bestMoves = new Object[size];
+		secondMoves = new Object[size];
+	}
+
+	// Empties the table. Not safe while threads are searching
+	public void clear() {
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = 0;
+			data[i] = 0;
+			bestMoves[i] = null;
+			secondMoves[i] = null;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public BoardInfo<M> get(long signature) {
+		int index = (int) signature & mask;
+
+		long entry = data[index];
+		M bestMove = (M) bestMoves[index];
+		M secondMove = (M) secondMoves[index];
+		if (bestMove == null || (keys[index] ^ entry ^ check(bestMove, secondMove)) != signature) {
+			return null;
+		}
+
+		// Value in the high half, then type, depth and second move depth
+		return new BoardInfo<M>((int) (entry >> 32), bestMove, (int) (entry >> 16) & 0xFF,
+				(byte) (entry >> 8), secondMove, (byte) entry);
+	}
+
+	// Always replaces what was in the slot
+	public void put(long signature, BoardInfo<M> boardInfo) {
+		int index = (int) signature & mask;
+		long entry = ((long) boardInfo.getValue() << 32) | ((boardInfo.getType() & 0xFF) << 16) |
+				((boardInfo.getDepth() & 0xFF) << 8) | (boardInfo.getSecondMoveDepth() & 0xFF);
+		M bestMove = boardInfo.getBestMove().copy();
+		M secondMove = boardInfo.getSecondBestMove() == null ? null : boardInfo.getSecondBestMove().copy();
+
+		data[index] = entry;
+		bestMoves[index] = bestMove;
+		secondMoves[index] = secondMove;
+		keys[index] = signature ^ entry ^ check(bestMove, secondMove);
+	}
+
+	// Number of slots in use
+	public int size() {
+		int size = 0;
+		for (Object move : bestMoves) {
+			if (move != null) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	// Thousandths of the slots in use, from a sample of the first thousand
+	public int hashFull() {
+		int sample = Math.min(1000, bestMoves.length);
+		int used = 0;
+		for (int i = 0; i < sample; i++) {
+			if (bestMoves[i] != null) {
+				used++;
+			}
+		}
+		return used * 1000 / sample;
+	}
+
+	// Ties the moves to the key, so a torn read of the moves is caught too
+	private long check(M bestMove, M secondMove) {
+		return ((long) bestMove.hashCode() << 32) ^ (secondMove == null ? 0 : secondMove.hashCode());
+	}
+}
@@ -0,0 +1,37 @@
+package chess.search;
+
+/**
+ *
+ * A Timer that also hears how the search is going, so it can decide between
+ * iterations whether another one is worth starting. timeup() is then only the
+ * hard limit, which cuts an iteration short.
+ *
+ */
+public interface TimeManager extends Timer {
+
+	/**
+	 * Called after each iteration the search completes.
+	 *
+	 * @param bestMoveChanged true if the iteration picked a different move.
+	 * @param scoreDrop how much worse the score got, in hundredths of a pawn.
+	 * Negative if it got better.
+	 */
+	public void iterationFinished(boolean bestMoveChanged, int scoreDrop);
+
+	/**
+	 * Called when the root fails low, and the move we had is worse than we
+	 * thought.
+	 */
+	public void failLow();
+
+	/**
+	 * @return true if there is time to start another iteration.
+	 */
+	public boolean nextIteration();
+
+	/**
+	 * @return how long after start() timeup() ends the search, in milliseconds,
+	 * so the search can make sure it looks at the clock then.
+	 */
+	public int hardLimit();
+}
@@ -0,0 +1,28 @@
+package chess.search;
+
+import chess.board.Move;
+
+/**
+ *
+ * Where a search keeps what it learned about positions, by board signature.
+ * LRUTranspositionTable is for one thread, and SharedTranspositionTable for
+ * several searching at once.
+ *
+ */
+public interface TranspositionTable<M extends Move<M>> {
+
+	/**
+	 * @return the entry for this signature, or null if there isn't one.
+	 */
+	public BoardInfo<M> get(long signature);
+
+	public void put(long signature, BoardInfo<M> boardInfo);
+
+	// Number of entries
+	public int size();
+
+	// Thousandths of the table in use
+	public int hashFull();
+
+	public void clear();
+}
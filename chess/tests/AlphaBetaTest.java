@@ -7,13 +7,30 @@ import org.junit.Test;
 import java.lang.management.ThreadMXBean;
 import java.lang.management.ManagementFactory;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import chess.board.ArrayBoard;
 import chess.board.ArrayMove;
+import chess.evaluation.SimpleEvaluator;
+import chess.search.CpuTimer;
+import chess.search.DFS;
+import chess.search.DynamicTimer;
 import chess.search.Negamax;
 import chess.search.Searcher;
 import chess.search.AlphaBetaFixedDepth;
+import chess.search.MTDF;
+import chess.search.ABDADA;
+import chess.search.BoardInfo;
+import chess.search.SharedTranspositionTable;
+import chess.search.MCTS;
+import chess.search.ProofNumberSearch;
+import chess.search.SearchInfo;
+import chess.search.SearchLimits;
+import chess.search.SearchResult;
+import chess.search.SearchListener;
+import chess.search.SimpleTimer;
 
 
 public class AlphaBetaTest {
@@ -36,6 +53,443 @@ public class AlphaBetaTest {
 				new String[] {"c6b5"});
 	}
 
+	// MTD(f) without a quiescence search should find the same moves as alpha-beta
+	@Test
+	public void mtdfDepth2Test () {
+		TestUtil.searcherTest(plainMTDF(), "r1bq1b1r/pppkpppp/3p4/8/8/P2PP2P/1PP2PP1/RNB1KBNR b KQ -", 2,
+				new String[] {"e7e5"});
+	}
+
+	@Test
+	public void mtdfDepth2Test2 () {
+		TestUtil.searcherTest(plainMTDF(), "rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -", 2,
+				new String[] {"e7g5"});
+	}
+
+	@Test
+	public void mtdfDepth2Test3 () {
+		TestUtil.searcherTest(plainMTDF(), "rnbqkbr1/pp1p1ppp/2p1p3/1N1n4/P3P3/5N1P/1PPPQPP1/R1B1KBR1 b KQ -", 2,
+				new String[] {"c6b5"});
+	}
+
+	private MTDF<ArrayMove, ArrayBoard> plainMTDF() {
+		MTDF<ArrayMove, ArrayBoard> mtdf = new MTDF<ArrayMove, ArrayBoard>();
+		mtdf.setQuiescenceDepth(0);
+		return mtdf;
+	}
+
+	// ABDADA should find the same moves with one thread or several
+	@Test
+	public void abdadaDepth2Test () {
+		TestUtil.searcherTest(abdada(1), "r1bq1b1r/pppkpppp/3p4/8/8/P2PP2P/1PP2PP1/RNB1KBNR b KQ -", 2,
+				new String[] {"e7e5"});
+	}
+
+	@Test
+	public void abdadaThreadsTest () {
+		TestUtil.searcherTest(abdada(4), "rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -", 4,
+				new String[] {"e7g5"});
+	}
+
+	// The shared table keeps its own copy of a move, so the entry is still
+	// found after the board that made the move has moved on
+	@Test
+	public void sharedTableTest () {
+		ArrayBoard board = ArrayBoard.FACTORY.create().init(ArrayBoard.STARTING_POSITION);
+		SharedTranspositionTable<ArrayMove> table = new SharedTranspositionTable<ArrayMove>(10);
+		long signature = board.signature();
+		ArrayMove move = board.generateMoves().get(0);
+		String played = move.serverString();
+
+		table.put(signature, new BoardInfo<ArrayMove>(5, move, BoardInfo.EXACT, 3));
+		board.applyMove(move);
+		BoardInfo<ArrayMove> boardInfo = table.get(signature);
+		board.undoMove();
+
+		assertNotNull(boardInfo);
+		assertEquals(played, boardInfo.getBestMove().serverString());
+		assertEquals(move, boardInfo.getBestMove());
+	}
+
+	private ABDADA<ArrayMove, ArrayBoard> abdada(int threads) {
+		ABDADA<ArrayMove, ArrayBoard> abdada = new ABDADA<ArrayMove, ArrayBoard>();
+		abdada.setThreads(threads);
+		return abdada;
+	}
+
+	// Monte Carlo tree search should take a hanging queen
+	@Test
+	public void mctsTest () {
+		MCTS<ArrayMove, ArrayBoard> mcts = new MCTS<ArrayMove, ArrayBoard>();
+		mcts.setPlayoutLimit(2000);
+		TestUtil.searcherTest(mcts, "rnb1kbnr/pppp1ppp/8/4p1q1/4P3/3P4/PPP2PPP/RNBQKBNR w KQkq -", 1,
+				new String[] {"c1g5"});
+	}
+
+	// The search after our move should start from that move's subtree
+	@Test
+	public void mctsTreeReuseTest () {
+		MCTS<ArrayMove, ArrayBoard> mcts = new MCTS<ArrayMove, ArrayBoard>();
+		mcts.setPlayoutLimit(2000);
+		ArrayBoard board = ArrayBoard.FACTORY.create().init("rnb1kbnr/pppp1ppp/8/4p1q1/4P3/3P4/PPP2PPP/RNBQKBNR w KQkq -");
+
+		board.applyMove(TestUtil.searcherOutput(mcts, board, 1));
+		TestUtil.searcherOutput(mcts, board, 1);
+
+		assertTrue("Tree wasn't reused, made " + mcts.playoutCount() + " playouts", mcts.playoutCount() < 2000);
+	}
+
+	// Proof-number search should prove the mate in 2, and give up on the opening
+	@Test
+	public void proofNumberSearchTest () {
+		ProofNumberSearch<ArrayMove, ArrayBoard> solver = new ProofNumberSearch<ArrayMove, ArrayBoard>();
+		solver.setShortestMate(true);
+		ArrayBoard board = ArrayBoard.FACTORY.create().init("r2qkb1r/pp2nppp/3p4/2pNN1B1/2BnP3/3P4/PPP2PPP/R2bK2R w KQkq -");
+		List<ArrayMove> line = solver.solve(board);
+
+		assertNotNull("Mate wasn't proven", line);
+		assertEquals(3, line.size());
+		assertEquals("d5f6", line.get(0).serverString().substring(0, 4));
+	}
+
+	@Test
+	public void proofNumberNotProvenTest () {
+		ProofNumberSearch<ArrayMove, ArrayBoard> solver = new ProofNumberSearch<ArrayMove, ArrayBoard>();
+		solver.setNodeLimit(10000);
+		ArrayBoard board = ArrayBoard.FACTORY.create().init("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -");
+
+		assertNull(solver.solve(board));
+	}
+
+	// Every iteration should start, find a best move, then finish, and the
+	// principal variation should start with the move that was returned
+	@Test
+	public void searchListenerTest () {
+		Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		EventListener listener = new EventListener();
+		negamax.addSearchListener(listener);
+		ArrayBoard board = ArrayBoard.FACTORY.create().init("rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -");
+		ArrayMove move = TestUtil.searcherOutput(negamax, board, 4);
+
+		assertEquals("s1bf1s2bf2s3bf3s4bf4", listener.events.toString());
+		assertEquals(move, listener.pvStart);
+		assertTrue(listener.pvLength > 1);
+	}
+
+	@Test
+	public void dfsListenerTest () {
+		DFS<ArrayMove, ArrayBoard> dfs = new DFS<ArrayMove, ArrayBoard>();
+		EventListener listener = new EventListener();
+		dfs.addSearchListener(listener);
+		TestUtil.searcherOutput(dfs, ArrayBoard.FACTORY.create().init("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -"), 4);
+
+		assertEquals("s4f4", listener.events.toString());
+		assertTrue(listener.statistics > 0);
+	}
+
+	// A stopped search should return a move from a completed iteration
+	// quickly, and leave the board as it found it
+	@Test
+	public void stopTest () throws InterruptedException {
+		final Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		final ArrayBoard board = ArrayBoard.FACTORY.create().init("rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -");
+		final ArrayMove[] result = new ArrayMove[1];
+		String before = board.toString();
+
+		Thread search = new Thread(new Runnable() {
+			public void run() {
+				result[0] = TestUtil.searcherOutput(negamax, board, 30);
+			}
+		});
+		search.start();
+		Thread.sleep(500);
+		negamax.stop();
+		search.join(1000);
+
+		assertFalse("Search didn't stop", search.isAlive());
+		assertNotNull(result[0]);
+		assertTrue(board.generateMoves().contains(result[0]));
+		assertEquals(before, board.toString());
+	}
+
+	// Each limit should end the search on its own, and the result should
+	// come with the depth reached and a principal variation
+	@Test
+	public void searchLimitsTest () {
+		Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		negamax.setEvaluator(new SimpleEvaluator());
+		negamax.setMaxDepth(50);
+		ArrayBoard board = ArrayBoard.FACTORY.create().init("rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -");
+
+		SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+		limits.setDepth(3);
+		SearchResult<ArrayMove> result = negamax.search(board, limits);
+		assertEquals(3, result.getDepth());
+		assertEquals(result.getBestMove(), result.getPv().get(0));
+		assertEquals("e7g5", result.getBestMove().serverString().substring(0, 4));
+
+		limits = new SearchLimits<ArrayMove>();
+		limits.setNodes(20000);
+		result = negamax.search(board, limits);
+		assertTrue(result.getNodes() < 21000);
+
+		limits = new SearchLimits<ArrayMove>();
+		limits.setDepth(3);
+		List<ArrayMove> searchMoves = board.generateMoves();
+		searchMoves.remove(result.getBestMove());
+		limits.setSearchMoves(searchMoves);
+		assertTrue(searchMoves.contains(negamax.search(board, limits).getBestMove()));
+	}
+
+	@Test
+	public void searchMateLimitTest () {
+		Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		negamax.setEvaluator(new SimpleEvaluator());
+		negamax.setMaxDepth(50);
+		ArrayBoard board = ArrayBoard.FACTORY.create().init("r2qkb1r/pp2nppp/3p4/2pNN1B1/2BnP3/3P4/PPP2PPP/R2bK2R w KQkq -");
+
+		SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+		limits.setMate(2);
+		SearchResult<ArrayMove> result = negamax.search(board, limits);
+		assertTrue(result.getScore() >= new SimpleEvaluator().mate());
+		assertEquals("d5f6", result.getBestMove().serverString().substring(0, 4));
+	}
+
+	// Searchers without a search() of their own fall back on getBestMove()
+	@Test
+	public void fallbackSearchTest () {
+		MTDF<ArrayMove, ArrayBoard> mtdf = plainMTDF();
+		mtdf.setEvaluator(new SimpleEvaluator());
+		mtdf.setMaxDepth(50);
+		ArrayBoard board = ArrayBoard.FACTORY.create().init("rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -");
+
+		SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+		limits.setDepth(2);
+		SearchResult<ArrayMove> result = mtdf.search(board, limits);
+		assertEquals(result.getBestMove(), result.getPv().get(0));
+		assertEquals("e7g5", result.getBestMove().serverString().substring(0, 4));
+
+		limits = new SearchLimits<ArrayMove>();
+		limits.setMoveTime(200);
+		long start = System.currentTimeMillis();
+		assertTrue(board.generateMoves().contains(mtdf.search(board, limits).getBestMove()));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	// Multi-PV should give different moves, best first, with the
+	// same best move as a single line search
+	@Test
+	public void multiPvTest () {
+		Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		negamax.setEvaluator(new SimpleEvaluator());
+		ArrayBoard board = ArrayBoard.FACTORY.create().init("rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -");
+
+		SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+		limits.setDepth(4);
+		ArrayMove single = negamax.search(board, limits).getBestMove();
+		limits.setMultiPv(3);
+		SearchResult<ArrayMove> result = negamax.search(board, limits);
+		List<SearchResult<ArrayMove>> lines = result.getLines();
+
+		assertEquals(3, lines.size());
+		assertEquals(single, result.getBestMove());
+		assertEquals(result.getBestMove(), lines.get(0).getBestMove());
+		for (int i = 1; i < lines.size(); i++) {
+			assertFalse(lines.get(i).getBestMove().equals(lines.get(i - 1).getBestMove()));
+			assertTrue(lines.get(i).getScore() <= lines.get(i - 1).getScore());
+			assertEquals(lines.get(i).getBestMove(), lines.get(i).getPv().get(0));
+		}
+	}
+
+	// A 20 second clock gives a soft limit of about 450ms after a stable
+	// iteration, and twice that after one that failed low
+	@Test
+	public void dynamicTimerFailLowTest () throws InterruptedException {
+		DynamicTimer stable = new DynamicTimer(20000, 0);
+		DynamicTimer failedLow = new DynamicTimer(20000, 0);
+		stable.start(20000, 20000);
+		failedLow.start(20000, 20000);
+		stable.okToTimeup();
+		failedLow.okToTimeup();
+
+		failedLow.failLow();
+		stable.iterationFinished(false, 0);
+		failedLow.iterationFinished(false, 0);
+		Thread.sleep(650);
+
+		assertFalse("Stable iteration wasn't stopped", stable.nextIteration());
+		assertTrue("Fail low didn't extend the time", failedLow.nextIteration());
+	}
+
+	// A 30 second clock gives a hard limit of about 6 seconds
+	@Test
+	public void dynamicTimerTest () {
+		Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		negamax.setEvaluator(new SimpleEvaluator());
+		negamax.setMinDepth(3);
+		negamax.setMaxDepth(50);
+		negamax.setTimer(new DynamicTimer(30000, 1000));
+		ArrayBoard board = ArrayBoard.FACTORY.create().init("rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -");
+
+		SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+		limits.setClock(30000, 30000);
+		SearchResult<ArrayMove> result = negamax.search(board, limits);
+		assertTrue(result.getDepth() >= 3);
+		assertTrue(result.getElapsedMillis() < 6500);
+	}
+
+	// A 30 second clock gives half a second of CPU time, and at most
+	// three times that on the wall clock
+	@Test
+	public void cpuTimerTest () {
+		Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		negamax.setEvaluator(new SimpleEvaluator());
+		negamax.setMinDepth(3);
+		negamax.setMaxDepth(50);
+		negamax.setTimer(new CpuTimer(30000, 0));
+		ArrayBoard board = ArrayBoard.FACTORY.create().init("rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -");
+
+		SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+		limits.setClock(30000, 30000);
+		SearchResult<ArrayMove> result = negamax.search(board, limits);
+		assertTrue(result.getDepth() >= 3);
+		assertTrue(result.getElapsedMillis() < 2000);
+	}
+
+	// A ponder search should wait for its hit, then finish on the clock it's
+	// given, and a missed one should stop when told to
+	@Test
+	public void ponderTest () throws InterruptedException {
+		final Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		negamax.setEvaluator(new SimpleEvaluator());
+		negamax.setMinDepth(1);
+		negamax.setMaxDepth(50);
+		negamax.setTimer(new SimpleTimer(20000000, 300));
+		final ArrayBoard board = ArrayBoard.FACTORY.create().init("rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -");
+		final SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+		limits.setPlayed(true);
+		limits.setPonder(true);
+		final List<SearchResult<ArrayMove>> results = new ArrayList<SearchResult<ArrayMove>>();
+
+		Runnable ponder = new Runnable() {
+			public void run() {
+				results.add(negamax.search(board, limits));
+			}
+		};
+		Thread search = new Thread(ponder);
+		search.start();
+		Thread.sleep(1000);
+		assertTrue("Ponder search didn't wait", search.isAlive());
+		negamax.ponderHit(1000000, 1000000);
+		search.join(5000);
+		assertFalse("Ponder hit didn't finish", search.isAlive());
+		assertNotNull(results.get(0).getBestMove());
+
+		search = new Thread(ponder);
+		search.start();
+		Thread.sleep(500);
+		negamax.stop();
+		search.join(1000);
+		assertFalse("Ponder miss didn't stop", search.isAlive());
+
+		// A stop that comes before the search gets going still ends it
+		negamax.clearStop();
+		search = new Thread(ponder);
+		search.start();
+		negamax.stop();
+		search.join(5000);
+		assertFalse("Early stop was lost", search.isAlive());
+	}
+
+	// A stopped search leaves nothing made up in a table that's reused, so
+	// the next search scores the root as a search on a fresh table does
+	@Test
+	public void stoppedSearchTableTest () throws InterruptedException {
+		final Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		negamax.setEvaluator(new SimpleEvaluator());
+		negamax.setTableReuse(true);
+		final ArrayBoard board = ArrayBoard.FACTORY.create().init("rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -");
+		final SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+		limits.setDepth(5);
+
+		final SearchLimits<ArrayMove> ponderLimits = new SearchLimits<ArrayMove>();
+		ponderLimits.setDepth(5);
+		ponderLimits.setPonder(true);
+		Thread search = new Thread(new Runnable() {
+			public void run() {
+				negamax.search(board, ponderLimits);
+			}
+		});
+		negamax.clearStop();
+		search.start();
+		Thread.sleep(200);
+		negamax.stop();
+		search.join(5000);
+		assertFalse("Ponder search didn't stop", search.isAlive());
+
+		Negamax<ArrayMove, ArrayBoard> fresh = new Negamax<ArrayMove, ArrayBoard>();
+		fresh.setEvaluator(new SimpleEvaluator());
+		assertEquals(fresh.search(board, limits).getScore(), negamax.search(board, limits).getScore());
+	}
+
+	private static class EventListener implements SearchListener<ArrayMove> {
+		StringBuilder events = new StringBuilder();
+		ArrayMove pvStart;
+		int pvLength;
+		int statistics;
+
+		public void iterationStarted(SearchInfo<ArrayMove> info) {
+			events.append("s" + info.getDepth());
+		}
+
+		public void iterationFinished(SearchInfo<ArrayMove> info) {
+			events.append("f" + info.getDepth());
+		}
+
+		public void bestMoveChanged(SearchInfo<ArrayMove> info) {
+			events.append("b");
+			pvStart = info.getPvMove(0);
+			pvLength = info.getPvLength();
+			assertEquals(info.getBestMove(), pvStart);
+		}
+
+		public void statistics(SearchInfo<ArrayMove> info) {
+			statistics++;
+		}
+	}
+
+	// Nodes and time to the same depth for MTD(f) and Negamax
+//	@Test
+	public void mtdfCompareTest () {
+		String[] fens = {
+				"r1bq1b1r/pppkpppp/3p4/8/8/P2PP2P/1PP2PP1/RNB1KBNR b KQ -",
+				"rnbqk1n1/1pppb1p1/p6r/2N1PpBp/4P3/1P6/P1P1KPPP/R2Q1BNR b kq -",
+				"rnbqkbr1/pp1p1ppp/2p1p3/1N1n4/P3P3/5N1P/1PPPQPP1/R1B1KBR1 b KQ -"};
+		int depth = 6;
+
+		for (String fen : fens) {
+			Searcher<ArrayMove, ArrayBoard> mtdf = new MTDF<ArrayMove, ArrayBoard>();
+			Searcher<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+			ArrayBoard board = ArrayBoard.FACTORY.create().init(fen);
+
+			long startTime = System.currentTimeMillis();
+			ArrayMove mtdfMove = TestUtil.searcherOutput(mtdf, board, depth);
+			long mtdfTime = System.currentTimeMillis() - startTime;
+
+			startTime = System.currentTimeMillis();
+			ArrayMove negamaxMove = TestUtil.searcherOutput(negamax, board, depth);
+			long negamaxTime = System.currentTimeMillis() - startTime;
+
+			System.out.println("*******************************************************");
+			System.out.println("** " + fen);
+			System.out.println("** MTD(f): " + mtdfMove + ", " + NumberFormat.getNumberInstance(Locale.US).format(mtdf.nodeCount()) +
+					" nodes, " + NumberFormat.getNumberInstance(Locale.US).format(mtdfTime) + "ms");
+			System.out.println("** Negamax: " + negamaxMove + ", " + NumberFormat.getNumberInstance(Locale.US).format(negamax.nodeCount()) +
+					" nodes, " + NumberFormat.getNumberInstance(Locale.US).format(negamaxTime) + "ms");
+			System.out.println("*******************************************************");
+		}
+	}
+
 	// Compares two searchers
 	//	@Test
 	public void compareTest () {	
@@ -0,0 +1,176 @@
+package chess.tests;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import chess.board.ArrayBoard;
+import chess.board.ArrayMove;
+import chess.search.Searcher;
+
+/**
+ * Runs searchers over every position of an EPD file. Only the position is
+ * read from each line, so suites with extra operations (perft counts, best
+ * moves) can be used as-is.
+ */
+public class EpdTestUtil {
+	public static final String PERFT_SUITE_FILE = "chess/util/perftsuite.epd";
+	public static final String TACTICS_SUITE_FILE = "chess/util/tactics.epd";
+	public static final String MATE_SUITE_FILE = "chess/util/mates.epd";
+
+	// Reads the positions from an EPD file, up to maxPositions of them
+	public static List<String> readPositions(String epdFile, int maxPositions) {
+		List<String> fens = new ArrayList<String>();
+
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(epdFile));
+			String line;
+			while ((line = reader.readLine()) != null && fens.size() < maxPositions) {
+
+				// A position is the first four fields: pieces, turn, castling, en passant
+				String[] fields = line.split(";")[0].trim().split("\\s+");
+				if (fields.length >= 4) {
+					fens.add(fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3]);
+				}
+			}
+			reader.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return fens;
+	}
+
+	/**
+	 * Searches each position with both searchers to the same fixed depth, printing
+	 * the moves chosen and the nodes each searcher needed.
+	 *
+	 * @return the fraction of positions where both searchers chose the same move.
+	 */
+	public static double compareSearchers(Searcher<ArrayMove, ArrayBoard> baseline,
+			Searcher<ArrayMove, ArrayBoard> candidate, String epdFile, int depth, int maxPositions) {
+		NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+		long baselineNodes = 0;
+		long candidateNodes = 0;
+		int positions = 0;
+		int agreements = 0;
+
+		for (String fen : readPositions(epdFile, maxPositions)) {
+			ArrayBoard board = ArrayBoard.FACTORY.create().init(fen);
+
+			// Nothing to search in finished games
+			if (board.generateMoves().isEmpty()) {
+				continue;
+			}
+
+			ArrayMove baselineMove = TestUtil.searcherOutput(baseline, board, depth);
+			baselineNodes += baseline.nodeCount();
+			ArrayMove candidateMove = TestUtil.searcherOutput(candidate, board, depth);
+			candidateNodes += candidate.nodeCount();
+
+			positions++;
+			if (baselineMove.equals(candidateMove)) {
+				agreements++;
+			}
+			System.out.println(fen + "  " + baselineMove + " (" + format.format(baseline.nodeCount()) + ")  " +
+					candidateMove + " (" + format.format(candidate.nodeCount()) + ")");
+		}
+
+		double agreement = (positions == 0) ? 1 : (double) agreements / positions;
+		System.out.println("*******************************************************");
+		System.out.println("** Agreement: " + agreements + "/" + positions);
+		System.out.println("** Baseline nodes: " + format.format(baselineNodes));
+		System.out.println("** Candidate nodes: " + format.format(candidateNodes));
+		System.out.println("*******************************************************");
+		return agreement;
+	}
+
+	// Reads the positions and their best moves from an EPD file, up to maxPositions of them.
+	// Best moves have to be in coordinate notation (e2e4), the way the server sends them
+	public static Map<String, String> readBestMoves(String epdFile, int maxPositions) {
+		Map<String, String> bestMoves = new LinkedHashMap<String, String>();
+
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(epdFile));
+			String line;
+			while ((line = reader.readLine()) != null && bestMoves.size() < maxPositions) {
+				String[] fields = line.split(";")[0].trim().split("\\s+");
+				if (fields.length >= 6 && fields[4].equals("bm")) {
+					bestMoves.put(fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3], fields[5]);
+				}
+			}
+			reader.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return bestMoves;
+	}
+
+	// Reads the positions and their mate lengths, the "dm" operation, from an EPD file
+	public static Map<String, Integer> readMateLengths(String epdFile, int maxPositions) {
+		Map<String, Integer> mateLengths = new LinkedHashMap<String, Integer>();
+
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(epdFile));
+			String line;
+			while ((line = reader.readLine()) != null && mateLengths.size() < maxPositions) {
+				String[] operations = line.split(";");
+				String[] fields = operations[0].trim().split("\\s+");
+				for (int i = 1; i < operations.length; i++) {
+					String[] operation = operations[i].trim().split("\\s+");
+					if (fields.length >= 4 && operation.length == 2 && operation[0].equals("dm")) {
+						mateLengths.put(fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3],
+								Integer.parseInt(operation[1]));
+					}
+				}
+			}
+			reader.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return mateLengths;
+	}
+
+	/**
+	 * Searches each position of a test suite to a fixed depth, printing
+	 * the move found and how long the search took.
+	 *
+	 * @return the number of positions where the searcher found the best move.
+	 */
+	public static int solveSuite(Searcher<ArrayMove, ArrayBoard> searcher, String epdFile, int depth, int maxPositions) {
+		NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+		long totalTime = 0;
+		long totalNodes = 0;
+		int solved = 0;
+
+		Map<String, String> bestMoves = readBestMoves(epdFile, maxPositions);
+		for (Map.Entry<String, String> entry : bestMoves.entrySet()) {
+			ArrayBoard board = ArrayBoard.FACTORY.create().init(entry.getKey());
+
+			long start = System.currentTimeMillis();
+			ArrayMove move = TestUtil.searcherOutput(searcher, board, depth);
+			long time = System.currentTimeMillis() - start;
+			totalTime += time;
+			totalNodes += searcher.nodeCount();
+
+			boolean found = move.serverString().startsWith(entry.getValue());
+			if (found) {
+				solved++;
+			}
+			System.out.println(entry.getKey() + "  " + move + (found ? "" : " (expected " + entry.getValue() + ")") +
+					"  " + format.format(time) + " ms");
+		}
+
+		System.out.println("*******************************************************");
+		System.out.println("** Solved: " + solved + "/" + bestMoves.size());
+		System.out.println("** Time: " + format.format(totalTime) + " ms");
+		System.out.println("** Nodes: " + format.format(totalNodes));
+		System.out.println("*******************************************************");
+		return solved;
+	}
+}
@@ -0,0 +1,443 @@
+package chess.tests;
+
+import static org.junit.Assert.*;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import chess.board.ArrayBoard;
+import chess.board.ArrayMove;
+import chess.evaluation.SimpleEvaluator;
+import chess.search.ABDADA;
+import chess.search.AdvancedTimer;
+import chess.search.CpuTimer;
+import chess.search.DynamicTimer;
+import chess.search.MCTS;
+import chess.search.Negamax;
+import chess.search.ProofNumberSearch;
+import chess.search.SearchLimits;
+import chess.search.SearchResult;
+
+/**
+ * Compares pruned and reduced searches against the plain Negamax search
+ * on an EPD suite. These take a long time, so they aren't run by default.
+ */
+public class SearchRegressionTest {
+	private static final int DEPTH = 5;
+	private static final int POSITIONS = 40;
+
+	// ProbCut only starts at depth 5, below the root
+	private static final int PROBCUT_DEPTH = 7;
+
+	// Timed searches take seconds each, so they use fewer positions
+	private static final int TIMED_POSITIONS = 12;
+	private static final int CLOCK_TIME = 60000;
+	private static final int CLOCK_INCREMENT = 1000;
+
+	// Searches, and their move time, for the overrun distribution
+	private static final int OVERRUN_SEARCHES = 200;
+	private static final int OVERRUN_MOVE_TIME = 20;
+
+	// Searches under load, with a busy thread for each processor
+	private static final int LOAD_CLOCK_TIME = 30000;
+
+	// Reductions should pick the same move almost everywhere, with fewer nodes
+//	@Test
+	public void lateMoveReductionTest() {
+		Negamax<ArrayMove, ArrayBoard> full = new Negamax<ArrayMove, ArrayBoard>();
+		Negamax<ArrayMove, ArrayBoard> reduced = new Negamax<ArrayMove, ArrayBoard>();
+		reduced.setLateMoveReductions(true);
+
+		double agreement = EpdTestUtil.compareSearchers(full, reduced, EpdTestUtil.PERFT_SUITE_FILE, DEPTH, POSITIONS);
+		assertTrue("Late move reductions only agreed on " + agreement + " of the positions", agreement >= 0.8);
+	}
+
+	// Frontier pruning should keep the best move in most positions
+//	@Test
+	public void frontierPruningTest() {
+		Negamax<ArrayMove, ArrayBoard> full = new Negamax<ArrayMove, ArrayBoard>();
+		Negamax<ArrayMove, ArrayBoard> pruned = new Negamax<ArrayMove, ArrayBoard>();
+		pruned.setFrontierPruning(true);
+
+		double agreement = EpdTestUtil.compareSearchers(full, pruned, EpdTestUtil.PERFT_SUITE_FILE, DEPTH, POSITIONS);
+		assertTrue("Frontier pruning only agreed on " + agreement + " of the positions", agreement >= 0.8);
+	}
+
+	// Quiescence pruning only drops captures that can't matter, so the move shouldn't change much
+//	@Test
+	public void quiescencePruningTest() {
+		Negamax<ArrayMove, ArrayBoard> full = new Negamax<ArrayMove, ArrayBoard>();
+		Negamax<ArrayMove, ArrayBoard> pruned = new Negamax<ArrayMove, ArrayBoard>();
+		pruned.setQuiescencePruning(true);
+
+		double agreement = EpdTestUtil.compareSearchers(full, pruned, EpdTestUtil.PERFT_SUITE_FILE, DEPTH, POSITIONS);
+		assertTrue("Quiescence pruning only agreed on " + agreement + " of the positions", agreement >= 0.8);
+	}
+
+	// Searching evasions and quiet checks in quiescence shouldn't lose any tactics
+//	@Test
+	public void quiescenceChecksTest() {
+		Negamax<ArrayMove, ArrayBoard> checks = new Negamax<ArrayMove, ArrayBoard>();
+		checks.setQuiescencePruning(true);
+		checks.setQuiescenceChecks(true);
+
+		int solved = EpdTestUtil.solveSuite(checks, EpdTestUtil.TACTICS_SUITE_FILE, DEPTH, POSITIONS);
+		assertTrue("Only solved " + solved + " tactics", solved >= 16);
+	}
+
+	// ProbCut cuts off on a prediction, so it shouldn't change the move or miss tactics
+//	@Test
+	public void probCutTest() {
+		Negamax<ArrayMove, ArrayBoard> full = new Negamax<ArrayMove, ArrayBoard>();
+		Negamax<ArrayMove, ArrayBoard> probCut = new Negamax<ArrayMove, ArrayBoard>();
+		probCut.setProbCut(true);
+
+		double agreement = EpdTestUtil.compareSearchers(full, probCut, EpdTestUtil.PERFT_SUITE_FILE, PROBCUT_DEPTH, POSITIONS);
+		assertTrue("ProbCut only agreed on " + agreement + " of the positions", agreement >= 0.8);
+
+		int solved = EpdTestUtil.solveSuite(probCut, EpdTestUtil.TACTICS_SUITE_FILE, PROBCUT_DEPTH, POSITIONS);
+		assertTrue("Only solved " + solved + " tactics", solved >= 16);
+	}
+
+	// Time to depth with more and more threads. Every thread count should pick a sensible move
+//	@Test
+	public void lazySmpScalingTest() {
+		int[] threadCounts = {1, 2, 4, 8, 16};
+		int depth = 6;
+		NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+
+		for (int threads : threadCounts) {
+			long time = 0;
+			long nodes = 0;
+			for (String fen : EpdTestUtil.readPositions(EpdTestUtil.PERFT_SUITE_FILE, 10)) {
+				Negamax<ArrayMove, ArrayBoard> smp = new Negamax<ArrayMove, ArrayBoard>();
+				smp.setThreads(threads);
+				ArrayBoard board = ArrayBoard.FACTORY.create().init(fen);
+
+				long start = System.currentTimeMillis();
+				TestUtil.searcherOutput(smp, board, depth);
+				time += System.currentTimeMillis() - start;
+				nodes += smp.nodeCount();
+			}
+			System.out.println("** " + threads + " threads: " + format.format(time) + " ms, " + format.format(nodes) + " nodes");
+		}
+	}
+
+	// ABDADA with more threads against one thread, to the same depth. The threads
+	// search the same tree, so the node counts show the work the extra threads
+	// cost, and the moves should mostly agree with one thread's. Speedup is the
+	// one thread time over the time with more, and only means much on a
+	// multi-core machine
+//	@Test
+	public void abdadaScalingTest() {
+		int[] threadCounts = {1, 2, 4, 8};
+		int depth = 6;
+		NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+		List<String> positions = EpdTestUtil.readPositions(EpdTestUtil.PERFT_SUITE_FILE, 10);
+
+		long baseTime = 0;
+		long baseNodes = 0;
+		List<ArrayMove> baseMoves = new ArrayList<ArrayMove>();
+		for (int threads : threadCounts) {
+			long time = 0;
+			long nodes = 0;
+			int agreed = 0;
+			for (int i = 0; i < positions.size(); i++) {
+				ABDADA<ArrayMove, ArrayBoard> abdada = new ABDADA<ArrayMove, ArrayBoard>();
+				abdada.setThreads(threads);
+				ArrayBoard board = ArrayBoard.FACTORY.create().init(positions.get(i));
+
+				long start = System.currentTimeMillis();
+				ArrayMove move = TestUtil.searcherOutput(abdada, board, depth);
+				time += System.currentTimeMillis() - start;
+				nodes += abdada.nodeCount();
+				if (threads == 1) {
+					baseMoves.add(move);
+				}
+				if (move.equals(baseMoves.get(i))) {
+					agreed++;
+				}
+			}
+			if (threads == 1) {
+				baseTime = time;
+				baseNodes = nodes;
+			}
+			System.out.println("** ABDADA " + threads + " threads: " + format.format(time) + " ms, " +
+					format.format(nodes) + " nodes (" + format.format((double) nodes / baseNodes) + "x), " +
+					agreed + "/" + positions.size() + " moves agree, speedup " +
+					format.format((double) baseTime / Math.max(time, 1)));
+		}
+	}
+
+	// Playouts and nodes per second for Monte Carlo tree search with more threads
+//	@Test
+	public void mctsSpeedTest() {
+		int[] threadCounts = {1, 2, 4, 8};
+		int playouts = 20000;
+		NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+
+		for (int threads : threadCounts) {
+			long time = 0;
+			long nodes = 0;
+			long total = 0;
+			for (String fen : EpdTestUtil.readPositions(EpdTestUtil.PERFT_SUITE_FILE, 10)) {
+				MCTS<ArrayMove, ArrayBoard> mcts = new MCTS<ArrayMove, ArrayBoard>();
+				mcts.setThreads(threads);
+				mcts.setPlayoutLimit(playouts);
+				ArrayBoard board = ArrayBoard.FACTORY.create().init(fen);
+
+				long start = System.currentTimeMillis();
+				TestUtil.searcherOutput(mcts, board, 1);
+				time += System.currentTimeMillis() - start;
+				nodes += mcts.nodeCount();
+				total += mcts.playoutCount();
+			}
+			time = Math.max(time, 1);
+			System.out.println("** MCTS " + threads + " threads: " + format.format(time) + " ms, " +
+					format.format(total * 1000 / time) + " playouts/s, " + format.format(nodes * 1000 / time) + " nps");
+		}
+	}
+
+	// Solve times for proof-number search against Negamax searching to the mate's depth
+//	@Test
+	public void proofNumberMateTest() {
+		NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+		long proofTime = 0;
+		long negamaxTime = 0;
+		int proven = 0;
+		int found = 0;
+
+		Map<String, String> bestMoves = EpdTestUtil.readBestMoves(EpdTestUtil.MATE_SUITE_FILE, 100);
+		Map<String, Integer> mateLengths = EpdTestUtil.readMateLengths(EpdTestUtil.MATE_SUITE_FILE, 100);
+		for (Map.Entry<String, Integer> entry : mateLengths.entrySet()) {
+			int mateLength = entry.getValue();
+			ArrayBoard board = ArrayBoard.FACTORY.create().init(entry.getKey());
+
+			ProofNumberSearch<ArrayMove, ArrayBoard> solver = new ProofNumberSearch<ArrayMove, ArrayBoard>();
+			solver.setMaxMoves(mateLength);
+			long start = System.currentTimeMillis();
+			List<ArrayMove> line = solver.solve(board);
+			long time = System.currentTimeMillis() - start;
+			proofTime += time;
+			if (line != null && (line.size() + 1) / 2 <= mateLength) {
+				proven++;
+			}
+
+			Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+			start = System.currentTimeMillis();
+			ArrayMove move = TestUtil.searcherOutput(negamax, board, 2 * mateLength - 1);
+			long searchTime = System.currentTimeMillis() - start;
+			negamaxTime += searchTime;
+			if (move.serverString().startsWith(bestMoves.get(entry.getKey()))) {
+				found++;
+			}
+
+			System.out.println(entry.getKey() + "  mate in " + mateLength + ": df-pn " +
+					(line == null ? "not proven" : line.get(0) + " in " + (line.size() + 1) / 2) + ", " +
+					format.format(time) + " ms, " + format.format(solver.nodeCount()) + " nodes; Negamax " +
+					move + ", " + format.format(searchTime) + " ms, " + format.format(negamax.nodeCount()) + " nodes");
+		}
+
+		System.out.println("*******************************************************");
+		System.out.println("** df-pn: " + proven + "/" + mateLengths.size() + " proven, " + format.format(proofTime) + " ms");
+		System.out.println("** Negamax: " + found + "/" + mateLengths.size() + " found, " + format.format(negamaxTime) + " ms");
+		System.out.println("*******************************************************");
+	}
+
+	// Nodes for three lines against one line, and against three searches that
+	// each leave out the moves already found. On tactics the lines cost much
+	// more, because the moves below a winning one need exact scores, where one
+	// line only needs to show they lose
+//	@Test
+	public void multiPvTest() {
+		NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+		long singleNodes = 0;
+		long multiNodes = 0;
+		long separateNodes = 0;
+
+		for (String fen : EpdTestUtil.readPositions(EpdTestUtil.PERFT_SUITE_FILE, POSITIONS)) {
+			ArrayBoard board = ArrayBoard.FACTORY.create().init(fen);
+			SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+			limits.setDepth(DEPTH + 1);
+
+			limits.setMultiPv(3);
+			multiNodes += multiPvNegamax().search(board, limits).getNodes();
+
+			// The searches share their table, like the lines of one search do
+			Negamax<ArrayMove, ArrayBoard> negamax = multiPvNegamax();
+			negamax.setTableReuse(true);
+			limits.setMultiPv(1);
+			List<ArrayMove> moves = board.generateMoves();
+			for (int line = 0; line < 3 && !moves.isEmpty(); line++) {
+				limits.setSearchMoves(moves);
+				SearchResult<ArrayMove> result = negamax.search(board, limits);
+				if (line == 0) {
+					singleNodes += result.getNodes();
+				}
+				separateNodes += result.getNodes();
+				moves.remove(result.getBestMove());
+			}
+		}
+
+		System.out.println("*******************************************************");
+		System.out.println("** 1 line: " + format.format(singleNodes) + " nodes");
+		System.out.println("** 3 lines: " + format.format(multiNodes) + " nodes (" +
+				format.format((double) multiNodes / singleNodes) + "x)");
+		System.out.println("** 3 searches: " + format.format(separateNodes) + " nodes (" +
+				format.format((double) separateNodes / singleNodes) + "x)");
+		System.out.println("*******************************************************");
+		assertTrue("Three lines took more nodes than three searches", multiNodes < separateNodes);
+	}
+
+	private Negamax<ArrayMove, ArrayBoard> multiPvNegamax() {
+		Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		negamax.setNullMovePruning(true);
+		negamax.setLateMoveReductions(true);
+		negamax.setFrontierPruning(true);
+		negamax.setEvaluator(new SimpleEvaluator());
+		return negamax;
+	}
+
+	// The dynamic timer against the fixed allocation, on the same clock. It
+	// should take less time on average, by stopping early on stable moves,
+	// and lose less than a ply of depth for it
+//	@Test
+	public void dynamicTimerTest() {
+		NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+		long[] time = new long[2];
+		long[] depth = new long[2];
+
+		for (String fen : EpdTestUtil.readPositions(EpdTestUtil.PERFT_SUITE_FILE, TIMED_POSITIONS)) {
+			for (int i = 0; i < 2; i++) {
+				ArrayBoard board = ArrayBoard.FACTORY.create().init(fen);
+				Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+				negamax.setNullMovePruning(true);
+				negamax.setLateMoveReductions(true);
+				negamax.setFrontierPruning(true);
+				negamax.setEvaluator(new SimpleEvaluator());
+				negamax.setMinDepth(3);
+				negamax.setMaxDepth(30);
+				negamax.setTimer(i == 0 ? new AdvancedTimer(CLOCK_TIME, CLOCK_INCREMENT) :
+					new DynamicTimer(CLOCK_TIME, CLOCK_INCREMENT));
+				SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+				limits.setClock(CLOCK_TIME, CLOCK_TIME);
+
+				SearchResult<ArrayMove> result = negamax.search(board, limits);
+				time[i] += result.getElapsedMillis();
+				depth[i] += result.getDepth();
+			}
+		}
+
+		int positions = TIMED_POSITIONS;
+		System.out.println("*******************************************************");
+		System.out.println("** Fixed: " + format.format(time[0] / positions) + " ms, depth " +
+				format.format((double) depth[0] / positions));
+		System.out.println("** Dynamic: " + format.format(time[1] / positions) + " ms, depth " +
+				format.format((double) depth[1] / positions));
+		System.out.println("*******************************************************");
+		assertTrue("The dynamic timer took longer", time[1] < time[0]);
+		assertTrue("The dynamic timer lost a ply", depth[1] > depth[0] - positions);
+	}
+
+	// How far searches run past their move time. The clock is polled about
+	// every millisecond, with an alarm at the deadline, so most searches
+	// should end within a few milliseconds. The tail is garbage collection
+	// and the scheduler, which no polling gets around
+//	@Test
+	public void overrunTest() {
+		NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+		format.setMaximumFractionDigits(2);
+		List<String> positions = EpdTestUtil.readPositions(EpdTestUtil.PERFT_SUITE_FILE, TIMED_POSITIONS);
+		Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+		negamax.setNullMovePruning(true);
+		negamax.setLateMoveReductions(true);
+		negamax.setFrontierPruning(true);
+		negamax.setEvaluator(new SimpleEvaluator());
+		negamax.setMaxDepth(50);
+		SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+		limits.setMoveTime(OVERRUN_MOVE_TIME);
+
+		// Positions that run out of depth first don't overrun at all
+		double[] overruns = new double[OVERRUN_SEARCHES];
+		int searches = 0;
+		for (int i = 0; i < OVERRUN_SEARCHES; i++) {
+			ArrayBoard board = ArrayBoard.FACTORY.create().init(positions.get(i % positions.size()));
+			long start = System.nanoTime();
+			SearchResult<ArrayMove> result = negamax.search(board, limits);
+			long elapsed = System.nanoTime() - start;
+			if (result.getDepth() < 50) {
+				overruns[searches++] = elapsed / 1000000.0 - OVERRUN_MOVE_TIME;
+			}
+		}
+		Arrays.sort(overruns, 0, searches);
+
+		System.out.println("*******************************************************");
+		System.out.println("** Overrun past " + OVERRUN_MOVE_TIME + " ms, over " + searches + " searches:");
+		System.out.println("** median " + format.format(overruns[searches / 2]) + " ms, 90% " +
+				format.format(overruns[searches * 9 / 10]) + " ms, 99% " + format.format(overruns[searches * 99 / 100]) +
+				" ms, max " + format.format(overruns[searches - 1]) + " ms");
+		System.out.println("*******************************************************");
+		assertTrue("The median overrun was " + overruns[searches / 2] + " ms", overruns[searches / 2] < 5);
+	}
+
+	// Nodes per move idle and under load, for the wall clock and CPU time.
+	// Under load, the CPU timer should search about as many nodes as idle,
+	// where the wall clock loses most of them
+//	@Test
+	public void cpuTimerTest() {
+		NumberFormat format = NumberFormat.getNumberInstance(Locale.US);
+		List<String> positions = EpdTestUtil.readPositions(EpdTestUtil.PERFT_SUITE_FILE, TIMED_POSITIONS);
+		long[][] nodes = new long[2][2];
+
+		for (int load = 0; load < 2; load++) {
+			List<Thread> busy = new ArrayList<Thread>();
+			final AtomicBoolean done = new AtomicBoolean();
+			for (int i = 0; load == 1 && i < Runtime.getRuntime().availableProcessors(); i++) {
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						while (!done.get()) {
+						}
+					}
+				});
+				thread.setDaemon(true);
+				thread.start();
+				busy.add(thread);
+			}
+
+			for (String fen : positions) {
+				for (int cpu = 0; cpu < 2; cpu++) {
+					ArrayBoard board = ArrayBoard.FACTORY.create().init(fen);
+					Negamax<ArrayMove, ArrayBoard> negamax = new Negamax<ArrayMove, ArrayBoard>();
+					negamax.setNullMovePruning(true);
+					negamax.setLateMoveReductions(true);
+					negamax.setFrontierPruning(true);
+					negamax.setEvaluator(new SimpleEvaluator());
+					negamax.setMinDepth(3);
+					negamax.setMaxDepth(50);
+					negamax.setTimer(cpu == 0 ? new AdvancedTimer(LOAD_CLOCK_TIME, 0) : new CpuTimer(LOAD_CLOCK_TIME, 0));
+					SearchLimits<ArrayMove> limits = new SearchLimits<ArrayMove>();
+					limits.setClock(LOAD_CLOCK_TIME, LOAD_CLOCK_TIME);
+					nodes[cpu][load] += negamax.search(board, limits).getNodes();
+				}
+			}
+			done.set(true);
+		}
+
+		double wallKept = (double) nodes[0][1] / nodes[0][0];
+		double cpuKept = (double) nodes[1][1] / nodes[1][0];
+		System.out.println("*******************************************************");
+		System.out.println("** Wall clock: " + format.format(nodes[0][0]) + " nodes idle, " +
+				format.format(nodes[0][1]) + " loaded (" + format.format(wallKept) + ")");
+		System.out.println("** CPU time: " + format.format(nodes[1][0]) + " nodes idle, " +
+				format.format(nodes[1][1]) + " loaded (" + format.format(cpuKept) + ")");
+		System.out.println("*******************************************************");
+		assertTrue("Under load the CPU timer kept " + cpuKept + " of its nodes", Math.abs(cpuKept - 1) < 0.2);
+	}
+}
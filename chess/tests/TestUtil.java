@@ -41,6 +41,17 @@ public class TestUtil {
 				+ " but we expected something from " + validMoveList, validMoveList.contains(studMove));
 	}
 
+	// Same as alphaBetaTest(), for any searcher
+	public static void searcherTest(Searcher<ArrayMove, ArrayBoard> searcher, String fen, int depth, String[] validMoves) {
+		ArrayBoard board = ArrayBoard.FACTORY.create().init(fen);
+		String move = searcherOutput(searcher, board, depth).serverString().substring(0,4);
+
+		List<String> validMoveList = Arrays.asList(validMoves);
+
+		assertTrue(board.toString() + "\n\nMove returned by depth " + depth + " search on [" + fen + "] was " + move
+				+ " but we expected something from " + validMoveList, validMoveList.contains(move));
+	}
+
 	// Returns the best move given a searcher
 	public static ArrayMove searcherOutput(Searcher<ArrayMove, ArrayBoard> searcher, ArrayBoard board, int depth) {
 		searcher.setEvaluator(stu_evaluator);